@@ -0,0 +1,148 @@
+package org.joakimhenriksson.patcher.codegen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a generated patcher needs to know about a patchable type, independent of whether it was read from
+ * source elements by the annotation processor or from reflection at runtime.
+ */
+public final class PatcherModel {
+	/**
+	 * Appended to the binary simple name of the patchable type to name its generated patcher.
+	 */
+	public static final String SUFFIX = "_JsonPatcher";
+
+	private final String packageName;
+	private final String typeName;
+	private final String patcherName;
+	private final List<Property> properties = new ArrayList<>();
+
+	/**
+	 * @param packageName the package of the patchable type, empty for the default package
+	 * @param typeName    the canonical name of the patchable type, as written in source
+	 * @param binaryName  the binary name of the patchable type
+	 */
+	public PatcherModel(String packageName, String typeName, String binaryName) {
+		this.packageName = packageName;
+		this.typeName = typeName;
+		this.patcherName = patcherSimpleName(packageName, binaryName);
+	}
+
+	/**
+	 * The simple name of the patcher generated for the type with the binary name.
+	 */
+	public static String patcherSimpleName(String packageName, String binaryName) {
+		String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+		return simpleName + SUFFIX;
+	}
+
+	/**
+	 * The bean property name of the setter or getter with the prefix, i.e. {@code setFooBar} is {@code fooBar} and
+	 * {@code getURL} is {@code URL}, shared by the runtime metadata and the annotation processor.
+	 */
+	public static String propertyName(String methodName, String prefix) {
+		String name = methodName.substring(prefix.length());
+		if (name.isEmpty()) {
+			return methodName;
+		}
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+			return name;
+		}
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+
+	public String getPackageName() {
+		return packageName;
+	}
+
+	public String getTypeName() {
+		return typeName;
+	}
+
+	public String getPatcherName() {
+		return patcherName;
+	}
+
+	public String getPatcherQualifiedName() {
+		return packageName.isEmpty() ? patcherName : packageName + "." + patcherName;
+	}
+
+	public List<Property> getProperties() {
+		return Collections.unmodifiableList(properties);
+	}
+
+	public PatcherModel add(Property property) {
+		properties.add(property);
+		return this;
+	}
+
+	/**
+	 * A json property and the members the generated code uses directly, a {@code null} member means the
+	 * generated code falls back to the reflective patcher for that access.
+	 */
+	public static final class Property {
+		private final String jsonName;
+		private final String typeName;
+		private final boolean object;
+		private final boolean blackListed;
+		private final String setter;
+		private final String writeField;
+		private final String getter;
+		private final String readField;
+
+		/**
+		 * @param jsonName    the json property name
+		 * @param typeName    the canonical name of the written type, as written in source
+		 * @param object      whether the type is a patchable sub object rather than a scalar or a container
+		 * @param blackListed whether the property has no accessor that is not black listed
+		 * @param setter      the setter to write with
+		 * @param writeField  the field to write to when there is no setter
+		 * @param getter      the getter to read with
+		 * @param readField   the field to read from when there is no getter
+		 */
+		public Property(String jsonName, String typeName, boolean object, boolean blackListed, String setter, String writeField, String getter, String readField) {
+			this.jsonName = jsonName;
+			this.typeName = typeName;
+			this.object = object;
+			this.blackListed = blackListed;
+			this.setter = setter;
+			this.writeField = writeField;
+			this.getter = getter;
+			this.readField = readField;
+		}
+
+		public String getJsonName() {
+			return jsonName;
+		}
+
+		public String getTypeName() {
+			return typeName;
+		}
+
+		public boolean isObject() {
+			return object;
+		}
+
+		public boolean isBlackListed() {
+			return blackListed;
+		}
+
+		public String getSetter() {
+			return setter;
+		}
+
+		public String getWriteField() {
+			return writeField;
+		}
+
+		public String getGetter() {
+			return getter;
+		}
+
+		public String getReadField() {
+			return readField;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package org.joakimhenriksson.patcher.codegen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the java source of a {@code GeneratedPatcher} for a {@link PatcherModel}.
+ *
+ * The generated {@code patchField} switches on the json property name and writes scalar values straight to
+ * the setter or field, handing sub objects read through the getter or field to the context. Whatever it cannot
+ * do directly, such as a private member, a container or a value node of an unexpected type, returns
+ * {@code NOT_HANDLED} so the context patches it reflectively instead.
+ */
+public final class PatcherSourceWriter {
+	private static final String GENERATED_PATCHER = "org.joakimhenriksson.patcher.GeneratedPatcher";
+	private static final String JSON_NODE = "com.fasterxml.jackson.databind.JsonNode";
+	private static final String CONTEXT = GENERATED_PATCHER + ".Context";
+	private static final String PREDICATE = "java.util.function.Predicate<java.util.Map.Entry<java.lang.String, " + JSON_NODE + ">>";
+
+	private static final Map<String, String[]> SCALARS = new HashMap<>();
+
+	static {
+		scalar("value.isTextual()", "value.textValue()", "java.lang.String");
+		scalar("value.isBoolean()", "value.booleanValue()", "boolean", "java.lang.Boolean");
+		scalar("value.isInt()", "value.intValue()", "int", "java.lang.Integer");
+		scalar("value.isIntegralNumber() && value.canConvertToLong()", "value.longValue()", "long", "java.lang.Long");
+		scalar("value.isNumber()", "value.floatValue()", "float", "java.lang.Float");
+		scalar("value.isNumber()", "value.doubleValue()", "double", "java.lang.Double");
+	}
+
+	private PatcherSourceWriter() {
+	}
+
+	private static void scalar(String condition, String expression, String... typeNames) {
+		for (String typeName : typeNames) {
+			SCALARS.put(typeName, new String[]{condition, expression});
+		}
+	}
+
+	/**
+	 * Whether the generated code can write values of the type directly.
+	 */
+	public static boolean isScalar(String typeName) {
+		return SCALARS.containsKey(typeName);
+	}
+
+	public static String write(PatcherModel model) {
+		StringBuilder source = new StringBuilder();
+		source.append("// Generated by ObjectPatcher, do not edit.\n");
+		if (!model.getPackageName().isEmpty()) {
+			source.append("package ").append(model.getPackageName()).append(";\n\n");
+		}
+		source.append("public final class ").append(model.getPatcherName())
+			.append(" extends ").append(GENERATED_PATCHER).append('<').append(model.getTypeName()).append("> {\n");
+		source.append("\tpublic ").append(model.getPatcherName()).append("() {\n");
+		source.append("\t\tsuper(").append(model.getTypeName()).append(".class);\n");
+		source.append("\t}\n\n");
+		source.append("\t@Override\n");
+		source.append("\tprotected int patchField(java.lang.String name, ").append(JSON_NODE).append(" value, ")
+			.append(model.getTypeName()).append(" patchable, ").append(PREDICATE).append(" predicate, ")
+			.append(CONTEXT).append(" context) {\n");
+		source.append("\t\tswitch (name) {\n");
+		for (PatcherModel.Property property : model.getProperties()) {
+			writeCase(source, property);
+		}
+		source.append("\t\t\tdefault:\n");
+		source.append("\t\t\t\treturn NOT_HANDLED;\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	private static void writeCase(StringBuilder source, PatcherModel.Property property) {
+		String write = write(property);
+		String read = read(property);
+		if (property.isBlackListed()) {
+			source.append("\t\t\tcase ").append(literal(property.getJsonName())).append(":\n");
+			source.append("\t\t\t\treturn BLACK_LISTED;\n");
+		} else if (property.isObject() && read != null) {
+			source.append("\t\t\tcase ").append(literal(property.getJsonName())).append(":\n");
+			source.append("\t\t\t\tif (value.isObject()) {\n");
+			source.append("\t\t\t\t\treturn context.patchObject(value, ").append(read).append(", predicate);\n");
+			source.append("\t\t\t\t}\n");
+			source.append("\t\t\t\treturn NOT_HANDLED;\n");
+		} else if (SCALARS.containsKey(property.getTypeName()) && write != null) {
+			String[] scalar = SCALARS.get(property.getTypeName());
+			source.append("\t\t\tcase ").append(literal(property.getJsonName())).append(":\n");
+			source.append("\t\t\t\tif (").append(scalar[0]).append(") {\n");
+			source.append("\t\t\t\t\t").append(String.format(write, scalar[1])).append(";\n");
+			source.append("\t\t\t\t\treturn 1;\n");
+			source.append("\t\t\t\t}\n");
+			source.append("\t\t\t\treturn NOT_HANDLED;\n");
+		}
+	}
+
+	private static String write(PatcherModel.Property property) {
+		if (property.getSetter() != null) {
+			return "patchable." + property.getSetter() + "(%s)";
+		}
+		return property.getWriteField() == null ? null : "patchable." + property.getWriteField() + " = %s";
+	}
+
+	private static String read(PatcherModel.Property property) {
+		if (property.getGetter() != null) {
+			return "patchable." + property.getGetter() + "()";
+		}
+		return property.getReadField() == null ? null : "patchable." + property.getReadField();
+	}
+
+	private static String literal(String value) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				literal.append('\\').append(c);
+			} else if (c < 0x20) {
+				literal.append(String.format("\\%03o", (int) c));
+			} else {
+				literal.append(c);
+			}
+		}
+		return literal.append('"').toString();
+	}
+}
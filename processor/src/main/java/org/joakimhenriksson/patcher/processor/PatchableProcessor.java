@@ -0,0 +1,221 @@
+package org.joakimhenriksson.patcher.processor;
+
+import org.joakimhenriksson.patcher.codegen.PatcherModel;
+import org.joakimhenriksson.patcher.codegen.PatcherSourceWriter;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Generates a reflection free {@code Patcher<JsonNode>} for every class annotated {@code @Patchable}.
+ *
+ * The properties are resolved the same way as {@code ClassMetadata} resolves them at runtime: fields and
+ * {@code set}/{@code get}/{@code is} methods annotated {@code @JsonProperty}, setters and getters taking precedence over
+ * fields, and {@code @BlackListed} methods ignored. The generated patcher is picked up by the runtime when the
+ * class is patched.
+ */
+@SupportedAnnotationTypes(PatchableProcessor.PATCHABLE)
+public class PatchableProcessor extends AbstractProcessor {
+	static final String PATCHABLE = "org.joakimhenriksson.patcher.Patchable";
+	private static final String BLACK_LISTED = "org.joakimhenriksson.patcher.BlackListed";
+	private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+	private static final String GET = "get";
+	private static final String SET = "set";
+	private static final String IS = "is";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement patchable = processingEnv.getElementUtils().getTypeElement(PATCHABLE);
+		if (patchable == null) {
+			return false;
+		}
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(patchable))) {
+			if (type.getKind() == ElementKind.CLASS && booleanValue(type, PATCHABLE, true)) {
+				generate(type);
+			}
+		}
+		return false;
+	}
+
+	private void generate(TypeElement type) {
+		if (!isAccessible(type) || type.getModifiers().contains(Modifier.ABSTRACT) || !type.getTypeParameters().isEmpty()) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+				"No patcher generated for " + type + ", it has to be a non private, non abstract and non generic class", type);
+			return;
+		}
+		Elements elements = processingEnv.getElementUtils();
+		String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+		PatcherModel model = new PatcherModel(packageName, type.getQualifiedName().toString(), elements.getBinaryName(type).toString());
+		resolve(type, model);
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(model.getPatcherQualifiedName(), type);
+			try (Writer writer = file.openWriter()) {
+				writer.write(PatcherSourceWriter.write(model));
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write patcher for " + type + ": " + e, type);
+		}
+	}
+
+	private void resolve(TypeElement type, PatcherModel model) {
+		Map<String, VariableElement> fields = new LinkedHashMap<>();
+		Map<String, ExecutableElement> setters = new LinkedHashMap<>();
+		Map<String, ExecutableElement> getters = new LinkedHashMap<>();
+		Set<String> blackListed = new LinkedHashSet<>();
+
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (field.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			Optional<String> name = stringValue(field, JSON_PROPERTY, "");
+			if (name.isPresent()) {
+				fields.putIfAbsent(name.get().isEmpty() ? field.getSimpleName().toString() : name.get(), field);
+			}
+		}
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (field.getModifiers().contains(Modifier.PUBLIC) && !field.getModifiers().contains(Modifier.STATIC)) {
+				fields.putIfAbsent(field.getSimpleName().toString(), field);
+			}
+		}
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			Optional<String> name = stringValue(method, JSON_PROPERTY, "");
+			if (!name.isPresent() || method.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			String methodName = method.getSimpleName().toString();
+			boolean setter = methodName.startsWith(SET) && method.getParameters().size() == 1;
+			boolean getter = method.getParameters().isEmpty() && (methodName.startsWith(GET) && method.getReturnType().getKind() != TypeKind.VOID
+				|| methodName.startsWith(IS) && (method.getReturnType().getKind() == TypeKind.BOOLEAN || method.getReturnType().toString().equals("java.lang.Boolean")));
+			String propertyName = !name.get().isEmpty() ? name.get() : PatcherModel.propertyName(methodName, setter ? SET : methodName.startsWith(IS) ? IS : GET);
+			if (!setter && !getter) {
+				continue;
+			}
+			if (annotation(method, BLACK_LISTED).isPresent() && booleanValue(method, BLACK_LISTED, true)) {
+				blackListed.add(propertyName);
+			} else if (setter) {
+				setters.putIfAbsent(propertyName, method);
+			} else {
+				getters.putIfAbsent(propertyName, method);
+			}
+		}
+
+		Set<String> names = new LinkedHashSet<>(fields.keySet());
+		names.addAll(setters.keySet());
+		names.addAll(getters.keySet());
+		names.addAll(blackListed);
+		for (String name : names) {
+			VariableElement field = fields.get(name);
+			ExecutableElement setter = setters.get(name);
+			ExecutableElement getter = getters.get(name);
+			boolean fieldBlackListed = field != null && booleanValue(field, BLACK_LISTED, false);
+			if (fieldBlackListed) {
+				field = null;
+			}
+			if (field == null && setter == null && getter == null) {
+				if (fieldBlackListed || blackListed.contains(name)) {
+					model.add(new PatcherModel.Property(name, null, false, true, null, null, null, null));
+				}
+				continue;
+			}
+			TypeMirror propertyType = setter != null ? setter.getParameters().get(0).asType() : field != null ? field.asType() : getter.getReturnType();
+			boolean fieldWritable = field != null && isAccessible(field) && !field.getModifiers().contains(Modifier.FINAL);
+			model.add(new PatcherModel.Property(name,
+				propertyType.toString(),
+				isObject(propertyType),
+				false,
+				setter != null && isAccessible(setter) ? setter.getSimpleName().toString() : null,
+				setter == null && fieldWritable ? field.getSimpleName().toString() : null,
+				getter != null && isAccessible(getter) ? getter.getSimpleName().toString() : null,
+				getter == null && field != null && isAccessible(field) ? field.getSimpleName().toString() : null));
+		}
+	}
+
+	/**
+	 * Whether the type is a sub object to patch recursively, i.e. a class that is neither a scalar nor a container.
+	 */
+	private boolean isObject(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED || PatcherSourceWriter.isScalar(type.toString())) {
+			return false;
+		}
+		Types types = processingEnv.getTypeUtils();
+		Elements elements = processingEnv.getElementUtils();
+		TypeMirror erased = types.erasure(type);
+		Element element = types.asElement(type);
+		return element.getKind() == ElementKind.CLASS
+			&& !elements.getPackageOf(element).getQualifiedName().toString().startsWith("java.")
+			&& !types.isAssignable(erased, types.erasure(elements.getTypeElement("java.util.Collection").asType()))
+			&& !types.isAssignable(erased, types.erasure(elements.getTypeElement("java.util.Map").asType()));
+	}
+
+	private static boolean isAccessible(Element element) {
+		for (Element e = element; e != null && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+			if (e.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Optional<? extends AnnotationMirror> annotation(Element element, String annotationName) {
+		return element.getAnnotationMirrors().stream()
+			       .filter(mirror -> ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName))
+			       .findFirst();
+	}
+
+	private Optional<Object> value(Element element, String annotationName) {
+		return annotation(element, annotationName).map(mirror -> {
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+				if (value.getKey().getSimpleName().contentEquals("value")) {
+					return value.getValue().getValue();
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * The value of the annotation, the default if the element is not annotated.
+	 */
+	private boolean booleanValue(Element element, String annotationName, boolean absent) {
+		return value(element, annotationName).map(Boolean.class::cast).orElse(absent);
+	}
+
+	/**
+	 * The value of the annotation, empty if the element is not annotated.
+	 */
+	private Optional<String> stringValue(Element element, String annotationName, String absent) {
+		if (!annotation(element, annotationName).isPresent()) {
+			return Optional.empty();
+		}
+		return Optional.of(value(element, annotationName).map(String.class::cast).orElse(absent));
+	}
+}
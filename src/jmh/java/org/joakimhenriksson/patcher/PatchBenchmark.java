@@ -0,0 +1,123 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Patch throughput of the patchers against {@link JsonPatcherObject}, with Jackson's
+ * {@link ObjectMapper#readerForUpdating(Object)} as the baseline.
+ *
+ * Run with {@code gradle jmh}, which adds the GC profiler so the allocation per patch is reported.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchBenchmark {
+	private static final Predicate<Map.Entry<String, JsonNode>> ALL = x -> true;
+	private static final Predicate<String> ALL_NAMES = x -> true;
+
+	/**
+	 * A flat patch only touches scalar properties, a nested one also patches the sub object.
+	 */
+	@Param({"flat", "nested"})
+	public String shape;
+
+	/**
+	 * A large patch carries long values and many properties the target does not have.
+	 */
+	@Param({"small", "large"})
+	public String size;
+
+	private String json;
+	private byte[] bytes;
+	private JsonNode tree;
+	private JsonPatcherObject patchable;
+	private ObjectReader updatingReader;
+
+	@Setup
+	public void setup() throws IOException {
+		StringBuilder builder = new StringBuilder("{\"duck\":\"");
+		builder.append("large".equals(size) ? repeat("quack", 2000) : "quack");
+		builder.append("\",\"int\":1,\"integer\":2");
+		if ("nested".equals(shape)) {
+			builder.append(",\"sub\":{\"strong\":\"Quack!\"}");
+		}
+		if ("large".equals(size)) {
+			for (int i = 0; i < 200; i++) {
+				builder.append(",\"unknown").append(i).append("\":").append(i);
+			}
+		}
+		json = builder.append('}').toString();
+		bytes = json.getBytes(StandardCharsets.UTF_8);
+
+		ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		tree = mapper.readTree(json);
+		patchable = new JsonPatcherObject();
+		updatingReader = mapper.readerForUpdating(patchable);
+	}
+
+	@Benchmark
+	public Object simplePatch() {
+		return SimplePatcherJson.PATCH(json, patchable, ALL);
+	}
+
+	@Benchmark
+	public Object recursivePatch() {
+		return RecursivePatcherJson.PATCH(json, patchable, ALL);
+	}
+
+	@Benchmark
+	public Object recursivePatchBytes() {
+		return RecursivePatcherJson.PATCH(bytes, 0, bytes.length, patchable, ALL);
+	}
+
+	@Benchmark
+	public Object recursivePatchTree() {
+		return RecursivePatcherJson.PATCH(tree, patchable, ALL);
+	}
+
+	@Benchmark
+	public Object streamingPatch() {
+		return StreamingPatcherJson.PATCH(bytes, 0, bytes.length, patchable, ALL_NAMES);
+	}
+
+	@Benchmark
+	public Object planPatchTree() {
+		return PatchPlan.PATCH(tree, patchable, ALL);
+	}
+
+	@Benchmark
+	public Object jacksonReaderForUpdating() throws IOException {
+		return updatingReader.readValue(json);
+	}
+
+	private static String repeat(String value, int times) {
+		StringBuilder builder = new StringBuilder(value.length() * times);
+		for (int i = 0; i < times; i++) {
+			builder.append(value);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,31 @@
+package org.joakimhenriksson.patcher;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The ways a {@link PropertyMetadata} can be linked into a {@link PropertyAccessor}.
+ */
+public enum AccessorBackend {
+	/**
+	 * {@link java.lang.reflect.Method#invoke} and {@link java.lang.reflect.Field#set}.
+	 */
+	REFLECTION {
+		@Override
+		PropertyAccessor link(@NotNull PropertyMetadata property) {
+			return new ReflectionAccessor(property);
+		}
+	},
+	/**
+	 * {@link java.lang.invoke.MethodHandle}s, falling back to {@link #REFLECTION} for members that cannot be unreflected.
+	 */
+	METHOD_HANDLE {
+		@Override
+		PropertyAccessor link(@NotNull PropertyMetadata property) {
+			return MethodHandleAccessor.link(property).orElseGet(() -> REFLECTION.link(property));
+		}
+	};
+
+	public static final AccessorBackend DEFAULT = METHOD_HANDLE;
+
+	abstract PropertyAccessor link(@NotNull PropertyMetadata property);
+}
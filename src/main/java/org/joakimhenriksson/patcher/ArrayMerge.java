@@ -0,0 +1,16 @@
+package org.joakimhenriksson.patcher;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that a json array merges into the annotated collection property, appending to a list and adding to
+ * a set, instead of replacing its elements.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface ArrayMerge {
+	public boolean value() default true;
+}
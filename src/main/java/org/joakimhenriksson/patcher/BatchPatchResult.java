@@ -0,0 +1,63 @@
+package org.joakimhenriksson.patcher;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of patching a batch of objects, one failing object does not abort the rest of the batch.
+ */
+public final class BatchPatchResult<T> {
+	private final int patched;
+	private final List<Failure<T>> failures;
+
+	BatchPatchResult(int patched, @NotNull List<Failure<T>> failures) {
+		this.patched = patched;
+		this.failures = Collections.unmodifiableList(failures);
+	}
+
+	/**
+	 * The number of objects that were patched without failure.
+	 */
+	public int getPatched() {
+		return patched;
+	}
+
+	@NotNull public List<Failure<T>> getFailures() {
+		return failures;
+	}
+
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	/**
+	 * Throw a {@link PatcherException} with every failure added as suppressed, if there were any failures.
+	 */
+	public BatchPatchResult<T> throwIfFailed() throws PatcherException {
+		if (!failures.isEmpty()) {
+			PatcherException exception = new PatcherException(failures.size() + " of " + (patched + failures.size()) + " patches failed");
+			failures.forEach(failure -> exception.addSuppressed(failure.getException()));
+			throw exception;
+		}
+		return this;
+	}
+
+	public static final class Failure<T> {
+		private final T patchable;
+		private final PatcherException exception;
+
+		Failure(T patchable, @NotNull PatcherException exception) {
+			this.patchable = patchable;
+			this.exception = exception;
+		}
+
+		public T getPatchable() {
+			return patchable;
+		}
+
+		@NotNull public PatcherException getException() {
+			return exception;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.joakimhenriksson.patcher.codegen.PatcherModel;
+
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The json properties of a class, resolved once and indexed by json property name.
+ *
+ * The index is flattened over the class hierarchy, a class reuses the resolved index of its superclass and
+ * interfaces and only scans the members it declares itself.
+ *
+ * Instances are cached in a {@link ClassValue}, so the lookup is thread safe and the
+ * cached metadata is released together with the class when its class loader is unloaded.
+ */
+public final class ClassMetadata {
+	private static final String GET = "get";
+	private static final String SET = "set";
+	private static final String IS = "is";
+
+	private static final ClassValue<Holder> CACHE = new ClassValue<Holder>() {
+		@Override
+		protected Holder computeValue(Class<?> type) {
+			return new Holder();
+		}
+	};
+
+	private final Class<?> type;
+	private final Map<String, PropertyMetadata> properties;
+	private final Set<String> blackListed;
+
+	private ClassMetadata(@NotNull Class<?> type, @NotNull Function<Class<?>, ClassMetadata> parents) {
+		Set<String> blackListed = new HashSet<>();
+		this.type = type;
+		this.properties = Collections.unmodifiableMap(resolve(type, parents, blackListed));
+		this.blackListed = Collections.unmodifiableSet(blackListed);
+	}
+
+	private ClassMetadata(Class<?> type, Map<String, PropertyMetadata> properties, Set<String> blackListed) {
+		this.type = type;
+		this.properties = Collections.unmodifiableMap(new LinkedHashMap<>(properties));
+		this.blackListed = Collections.unmodifiableSet(new HashSet<>(blackListed));
+	}
+
+	@NotNull public static ClassMetadata of(@NotNull Class<?> cls) {
+		if (PatchTracer.ENABLED) {
+			PatchTracer.METRICS.metadataRequested(cls);
+		}
+		return CACHE.get(cls).get(cls);
+	}
+
+	/**
+	 * Resolve the metadata of the class without caching it, for patchers that keep their own cache. The metadata
+	 * of the superclass and interfaces is taken from {@code parents}, e.g. the same cache.
+	 */
+	@NotNull static ClassMetadata create(@NotNull Class<?> cls, @NotNull Function<Class<?>, ClassMetadata> parents) {
+		return new ClassMetadata(cls, parents);
+	}
+
+	/**
+	 * Metadata of already resolved properties, e.g. from a {@link PatchWarmer} snapshot, to be used by
+	 * {@link #of(Class)} instead of resolving the class, unless the class was already resolved.
+	 *
+	 * @return whether the metadata was seeded
+	 */
+	static boolean seed(@NotNull Class<?> cls, @NotNull Map<String, PropertyMetadata> properties, @NotNull Set<String> blackListed) {
+		return CACHE.get(cls).seed(new ClassMetadata(cls, properties, blackListed));
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	@NotNull public Optional<PropertyMetadata> getProperty(@NotNull String name) {
+		return Optional.ofNullable(properties.get(name));
+	}
+
+	@NotNull public Collection<PropertyMetadata> getProperties() {
+		return properties.values();
+	}
+
+	/**
+	 * Whether the name is only that of {@link BlackListed} members, i.e. a property that was hidden.
+	 */
+	boolean isBlackListed(@NotNull String name) {
+		return blackListed.contains(name);
+	}
+
+	@NotNull Set<String> getBlackListed() {
+		return blackListed;
+	}
+
+	/**
+	 * Resolve the properties declared by the class and merge them over the already resolved properties of its
+	 * superclass, which in turn take precedence over those of its interfaces. A member declared by the class
+	 * replaces the inherited member of the same kind, the setter, getter and field are merged separately.
+	 * The names of the hidden properties are added to {@code hidden}.
+	 */
+	private static Map<String, PropertyMetadata> resolve(Class<?> cls, Function<Class<?>, ClassMetadata> parents, Set<String> hidden) {
+		Map<String, List<Method>> setters = new HashMap<>();
+		Map<String, Method> getters = new HashMap<>();
+		Map<String, Field> fields = new LinkedHashMap<>();
+		Set<String> hiddenSetters = new HashSet<>();
+		Set<String> hiddenGetters = new HashSet<>();
+		Set<String> hiddenFields = new HashSet<>();
+
+		for (Field field : cls.getDeclaredFields()) {
+			JsonProperty property = field.getAnnotation(JsonProperty.class);
+			if (property != null && !Modifier.isStatic(field.getModifiers())) {
+				String name = property.value().isEmpty() ? field.getName() : property.value();
+				if (isBlackListed(field)) {
+					hiddenFields.add(name);
+				} else {
+					fields.putIfAbsent(name, field);
+				}
+			}
+		}
+		for (Field field : cls.getFields()) {
+			if (!Modifier.isStatic(field.getModifiers()) && !isBlackListed(field)) {
+				fields.putIfAbsent(field.getName(), field);
+			}
+		}
+		for (Method method : cls.getDeclaredMethods()) {
+			JsonProperty property = method.getAnnotation(JsonProperty.class);
+			if (property == null || Modifier.isStatic(method.getModifiers()) || method.isBridge()) {
+				continue;
+			}
+			boolean blackListed = isBlackListed(method);
+			if (isSetter(method)) {
+				String name = propertyName(property, method, SET);
+				if (blackListed) {
+					hiddenSetters.add(name);
+				} else {
+					setters.computeIfAbsent(name, n -> new ArrayList<>()).add(method);
+				}
+			} else if (isGetter(method)) {
+				String name = propertyName(property, method, method.getName().startsWith(IS) ? IS : GET);
+				if (blackListed) {
+					hiddenGetters.add(name);
+				} else {
+					getters.putIfAbsent(name, method);
+				}
+			}
+		}
+
+		Map<String, PropertyMetadata> inherited = new LinkedHashMap<>();
+		for (Class<?> parent : parents(cls)) {
+			ClassMetadata metadata = parents.apply(parent);
+			metadata.properties.forEach(inherited::putIfAbsent);
+			hidden.addAll(metadata.blackListed);
+		}
+
+		Set<String> names = new LinkedHashSet<>(inherited.keySet());
+		names.addAll(fields.keySet());
+		names.addAll(setters.keySet());
+		names.addAll(getters.keySet());
+
+		Map<String, PropertyMetadata> properties = new LinkedHashMap<>();
+		for (String name : names) {
+			Optional<PropertyMetadata> parent = Optional.ofNullable(inherited.get(name));
+			Method getter = inherit(getters.get(name), hiddenGetters.contains(name), parent.flatMap(PropertyMetadata::getGetter));
+			Field field = inherit(fields.get(name), hiddenFields.contains(name), parent.flatMap(PropertyMetadata::getField));
+			Method setter = inherit(setter(setters.get(name), getter, field), hiddenSetters.contains(name), parent.flatMap(PropertyMetadata::getSetter));
+			if (setter != null || getter != null || field != null) {
+				boolean unchanged = parent.isPresent()
+					&& parent.get().getSetter().orElse(null) == setter
+					&& parent.get().getGetter().orElse(null) == getter
+					&& parent.get().getField().orElse(null) == field;
+				properties.put(name, unchanged ? parent.get() : new PropertyMetadata(name, setter, getter, field));
+			}
+		}
+		hidden.addAll(hiddenSetters);
+		hidden.addAll(hiddenGetters);
+		hidden.addAll(hiddenFields);
+		hidden.removeAll(properties.keySet());
+		return properties;
+	}
+
+	private static boolean isSetter(Method method) {
+		return method.getName().startsWith(SET) && method.getParameterCount() == 1;
+	}
+
+	private static boolean isGetter(Method method) {
+		if (method.getParameterCount() != 0) {
+			return false;
+		}
+		if (method.getName().startsWith(IS)) {
+			return method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class;
+		}
+		return method.getName().startsWith(GET) && method.getReturnType() != void.class;
+	}
+
+	private static boolean isBlackListed(AccessibleObject member) {
+		BlackListed blackListed = member.getAnnotation(BlackListed.class);
+		return blackListed != null && blackListed.value();
+	}
+
+	/**
+	 * The name given by the annotation, or the bean property name of the method, see {@link PatcherModel#propertyName}.
+	 */
+	private static String propertyName(JsonProperty property, Method method, String prefix) {
+		if (!property.value().isEmpty()) {
+			return property.value();
+		}
+		return PatcherModel.propertyName(method.getName(), prefix);
+	}
+
+	/**
+	 * The setter whose parameter type matches the type of the getter or field when the name is overloaded.
+	 */
+	private static Method setter(List<Method> setters, Method getter, Field field) {
+		if (setters == null) {
+			return null;
+		}
+		Class<?> type = getter != null ? getter.getReturnType() : field != null ? field.getType() : null;
+		for (Method setter : setters) {
+			if (setter.getParameterTypes()[0] == type) {
+				return setter;
+			}
+		}
+		return setters.get(0);
+	}
+
+	private static <T> T inherit(T declared, boolean hidden, Optional<T> inherited) {
+		if (declared != null || hidden) {
+			return declared;
+		}
+		return inherited.orElse(null);
+	}
+
+	/**
+	 * The superclass followed by the interfaces, in precedence order.
+	 */
+	private static List<Class<?>> parents(Class<?> cls) {
+		List<Class<?>> parents = new ArrayList<>();
+		if (cls.getSuperclass() != null && cls.getSuperclass() != Object.class) {
+			parents.add(cls.getSuperclass());
+		}
+		parents.addAll(Arrays.asList(cls.getInterfaces()));
+		return parents;
+	}
+
+	/**
+	 * The metadata of a class, resolved on first use unless it was seeded before. The holder lives in the
+	 * {@link ClassValue}, so seeded metadata is released with the class like resolved metadata.
+	 */
+	private static final class Holder {
+		private volatile ClassMetadata metadata;
+
+		ClassMetadata get(Class<?> type) {
+			ClassMetadata resolved = metadata;
+			if (resolved != null) {
+				return resolved;
+			}
+			synchronized (this) {
+				if (metadata == null) {
+					long start = PatchTracer.ENABLED ? System.nanoTime() : 0L;
+					metadata = new ClassMetadata(type, ClassMetadata::of);
+					if (PatchTracer.ENABLED) {
+						PatchTracer.METRICS.metadataResolved(type, System.nanoTime() - start);
+					}
+				}
+				return metadata;
+			}
+		}
+
+		synchronized boolean seed(ClassMetadata seeded) {
+			if (metadata != null) {
+				return false;
+			}
+			metadata = seeded;
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ClassMetadata(" + type.getName() + ", " + properties.keySet() + ")";
+	}
+}
@@ -0,0 +1,134 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.Striped;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Patches objects that are shared between threads, so readers never observe a half patched object.
+ *
+ * Copy on write patches a copy of the current value of an {@link AtomicReference} and publishes it with a
+ * compare and set, retrying on a concurrent update, so neither readers nor writers of different references
+ * ever block. In place patching takes the write lock of the object's stripe of {@value #STRIPES_PROPERTY}
+ * striped read write locks, readers take the read lock with {@link #READ}. Objects are striped by identity,
+ * so a patch that changes the hash code of an object keeps its lock.
+ *
+ * With a validator the patched object has to pass it, otherwise a {@link PatcherException} is thrown and nothing
+ * is published or changed. The object is validated on a copy made by the copier given, {@link #COPY} is a deep
+ * copy through the json mapper, which only keeps the state the mapper can read and write. In place patching
+ * without a validator does not copy at all.
+ *
+ * Maps and collections are patched in place, so a copier has to copy those the patch touches. With a shallow
+ * copier the copy shares them with the published object, whose maps and lists are then changed by the patch,
+ * without the lock and before validation, so readers can observe them half patched.
+ */
+public class ConcurrentPatcherJson extends JsonObjectPatcher {
+	public static final String STRIPES_PROPERTY = "objectpatcher.lock.stripes";
+	private static final int DEFAULT_STRIPES = 64;
+
+	private static final Striped<ReadWriteLock> LOCKS = Striped.readWriteLock(Integer.getInteger(STRIPES_PROPERTY, DEFAULT_STRIPES));
+
+	/**
+	 * Patch a copy of the current value and publish it.
+	 *
+	 * @return the published value
+	 */
+	@NotNull public static <T> T PATCH(@NotNull JsonNode tree, @NotNull AtomicReference<T> reference, @NotNull Predicate<? super T> validator, @NotNull UnaryOperator<T> copier) throws PatcherException {
+		return PATCH(tree, reference, x -> true, validator, copier);
+	}
+
+	/**
+	 * Patch a copy of the current value, made by the copier, and publish it if it passes the validator.
+	 *
+	 * @return the published value
+	 */
+	@NotNull public static <T> T PATCH(@NotNull JsonNode tree, @NotNull AtomicReference<T> reference, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate, @NotNull Predicate<? super T> validator, @NotNull UnaryOperator<T> copier) throws PatcherException {
+		while (true) {
+			T current = reference.get();
+			T patched = copier.apply(current);
+			RecursivePatcherJson.PATCH_TREE(tree, patched, predicate);
+			validate(patched, validator);
+			if (reference.compareAndSet(current, patched)) {
+				return patched;
+			}
+		}
+	}
+
+	/**
+	 * Patch the object in place under the write lock of its stripe, without validation and without copying it.
+	 */
+	@NotNull public static <T> T PATCH_LOCKED(@NotNull JsonNode tree, @NotNull T patchable) {
+		Lock lock = lockFor(patchable).writeLock();
+		lock.lock();
+		try {
+			RecursivePatcherJson.PATCH_TREE(tree, patchable, x -> true);
+			return patchable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Patch the object in place under the write lock of its stripe, if a copy patched first passes the validator.
+	 */
+	@NotNull public static <T> T PATCH_LOCKED(@NotNull JsonNode tree, @NotNull T patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate, @NotNull Predicate<? super T> validator, @NotNull UnaryOperator<T> copier) throws PatcherException {
+		Lock lock = lockFor(patchable).writeLock();
+		lock.lock();
+		try {
+			T copy = copier.apply(patchable);
+			RecursivePatcherJson.PATCH_TREE(tree, copy, predicate);
+			validate(copy, validator);
+			RecursivePatcherJson.PATCH_TREE(tree, patchable, predicate);
+			return patchable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Read the object under the read lock of its stripe, so the reader never sees a patch half applied.
+	 */
+	public static <T, R> R READ(@NotNull T patchable, @NotNull Function<? super T, R> reader) {
+		Lock lock = lockFor(patchable).readLock();
+		lock.lock();
+		try {
+			return reader.apply(patchable);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The lock of the object's stripe.
+	 */
+	@NotNull public static ReadWriteLock lockFor(@NotNull Object patchable) {
+		return LOCKS.get(System.identityHashCode(patchable));
+	}
+
+	/**
+	 * A deep copy through the json mapper, state the mapper does not read or write is lost.
+	 */
+	@SuppressWarnings("unchecked")
+	@NotNull public static <T> T COPY(@NotNull T value) throws PatcherException {
+		try {
+			return (T) objectMapper.treeToValue(objectMapper.valueToTree(value), value.getClass());
+		} catch (IllegalArgumentException | IOException e) {
+			throw new PatcherException("Unable to copy " + value.getClass().getSimpleName(), e);
+		}
+	}
+
+	private static <T> void validate(T patched, Predicate<? super T> validator) throws PatcherException {
+		if (!validator.test(patched)) {
+			throw new PatcherException("Patched " + patched.getClass().getSimpleName() + " failed validation");
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package org.joakimhenriksson.patcher;
+
+import javax.validation.constraints.NotNull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+
+/**
+ * Creates instances through the no argument constructor of the class, linked once per class into a {@link MethodHandle}.
+ */
+final class ConstructorFactory {
+	private static final MethodType GENERIC_CONSTRUCTOR = MethodType.methodType(Object.class);
+
+	private static final ClassValue<Optional<MethodHandle>> CONSTRUCTORS = new ClassValue<Optional<MethodHandle>>() {
+		@Override
+		protected Optional<MethodHandle> computeValue(Class<?> type) {
+			return link(type);
+		}
+	};
+
+	private ConstructorFactory() {
+	}
+
+	static Object create(@NotNull Class<?> type) throws PatcherException {
+		Optional<MethodHandle> constructor = CONSTRUCTORS.get(type);
+		if (!constructor.isPresent()) {
+			return null;
+		}
+		try {
+			return constructor.get().invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new PatcherException("Unable to create " + type.getSimpleName(), e);
+		}
+	}
+
+	private static Optional<MethodHandle> link(Class<?> type) {
+		if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())
+			|| type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers())) {
+			return Optional.empty();
+		}
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return Optional.of(MethodHandles.lookup().unreflectConstructor(constructor).asType(GENERIC_CONSTRUCTOR));
+		} catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+			return Optional.empty();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.validation.constraints.NotNull;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Base class of the patchers generated for {@link Patchable} classes.
+ *
+ * The generated {@link #patchField} writes the properties it knows directly, sub objects and everything else are
+ * handed back to the {@link Context} of the patcher driving it, {@link RecursivePatcherJson} unless another is
+ * given. As a {@link Patcher} the filter is tested against the value node of every field before the field is patched.
+ */
+public abstract class GeneratedPatcher<T> implements Patcher<JsonNode> {
+	/**
+	 * Returned by {@link #patchField} for a field it does not handle, which is then patched by the context.
+	 */
+	protected static final int NOT_HANDLED = -1;
+	/**
+	 * Returned by {@link #patchField} for a field that names a {@link BlackListed} property.
+	 */
+	protected static final int BLACK_LISTED = -2;
+
+	private final Class<T> type;
+
+	protected GeneratedPatcher(@NotNull Class<T> type) {
+		this.type = type;
+	}
+
+	@NotNull public Class<T> getType() {
+		return type;
+	}
+
+	@Override
+	public <V> V patch(JsonNode patch, V patchableValue) {
+		return patch(patch, patchableValue, x -> true);
+	}
+
+	@Override
+	public <V> V patch(JsonNode patch, V patchableValue, Predicate<JsonNode> filter) {
+		patchTree(patch, type.cast(patchableValue), entry -> filter.test(entry.getValue()));
+		return patchableValue;
+	}
+
+	/**
+	 * Patch the fields of the tree that pass the predicate, the predicate is passed on to sub objects.
+	 *
+	 * @return the number of properties written
+	 */
+	public int patchTree(@NotNull JsonNode tree, @NotNull T patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate) {
+		return patchTree(tree, patchable, predicate, RecursivePatcherJson.CONTEXT);
+	}
+
+	/**
+	 * Patch the fields of the tree that pass the predicate, handing sub objects and the fields it does not handle
+	 * to the context.
+	 *
+	 * @return the number of properties written
+	 */
+	public int patchTree(@NotNull JsonNode tree, @NotNull T patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate, @NotNull Context context) {
+		int written = 0;
+		Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			if (!predicate.test(field)) {
+				context.skipped(type, field.getKey());
+				continue;
+			}
+			int patched = patchField(field.getKey(), field.getValue(), patchable, predicate, context);
+			if (patched == NOT_HANDLED) {
+				written += context.patchField(field.getKey(), field.getValue(), patchable, predicate);
+			} else if (patched == BLACK_LISTED) {
+				context.blackListed(type, field.getKey());
+			} else {
+				written += patched;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Patch a single field.
+	 *
+	 * @return the number of properties written, {@link #NOT_HANDLED} if the field should be patched by the
+	 * context or {@link #BLACK_LISTED}
+	 */
+	protected abstract int patchField(@NotNull String name, @NotNull JsonNode value, @NotNull T patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate, @NotNull Context context);
+
+	/**
+	 * The patcher driving a generated patcher, which patches its sub objects and the fields it does not handle
+	 * with its own settings and receives the fields that were not patched.
+	 */
+	public interface Context {
+		/**
+		 * Patch a sub object, which may be null.
+		 *
+		 * @return the number of properties written
+		 */
+		int patchObject(@NotNull JsonNode tree, Object patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate);
+
+		/**
+		 * Patch a field the generated patcher does not handle.
+		 *
+		 * @return the number of properties written
+		 */
+		int patchField(@NotNull String name, @NotNull JsonNode value, @NotNull Object patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate);
+
+		/**
+		 * A field was rejected by the predicate.
+		 */
+		default void skipped(@NotNull Class<?> type, @NotNull String name) {
+		}
+
+		/**
+		 * A field names a {@link BlackListed} property.
+		 */
+		default void blackListed(@NotNull Class<?> type, @NotNull String name) {
+		}
+	}
+}
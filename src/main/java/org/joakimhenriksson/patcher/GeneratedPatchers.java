@@ -0,0 +1,81 @@
+package org.joakimhenriksson.patcher;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joakimhenriksson.patcher.codegen.PatcherModel;
+
+import javax.validation.constraints.NotNull;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the generated patcher of a class, looked up once per class.
+ *
+ * A {@link Patchable} class uses the patcher generated at compile time. Other classes can have one generated at
+ * runtime by {@link RuntimePatcherGenerator} when {@value #CODEGEN_PROPERTY} is set, after the class has been
+ * patched {@value #CODEGEN_THRESHOLD_PROPERTY} times, so cold classes never pay for the generation. Generation
+ * runs on a single background thread, the class is patched reflectively until the patcher is ready.
+ */
+public final class GeneratedPatchers {
+	public static final String CODEGEN_PROPERTY = "objectpatcher.codegen";
+	public static final String CODEGEN_THRESHOLD_PROPERTY = "objectpatcher.codegen.threshold";
+	public static final int DEFAULT_CODEGEN_THRESHOLD = 1000;
+
+	private static final boolean CODEGEN = Boolean.getBoolean(CODEGEN_PROPERTY) && RuntimePatcherGenerator.isAvailable();
+	private static final int CODEGEN_THRESHOLD = Math.max(1, Integer.getInteger(CODEGEN_THRESHOLD_PROPERTY, DEFAULT_CODEGEN_THRESHOLD));
+
+	private static final Executor GENERATOR = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("objectpatcher-codegen-%d").build());
+
+	private static final ClassValue<Holder> PATCHERS = new ClassValue<Holder>() {
+		@Override
+		protected Holder computeValue(Class<?> type) {
+			return new Holder(type);
+		}
+	};
+
+	private GeneratedPatchers() {
+	}
+
+	@SuppressWarnings("unchecked")
+	@NotNull public static <T> Optional<GeneratedPatcher<T>> of(@NotNull Class<T> cls) {
+		return Optional.ofNullable((GeneratedPatcher<T>) PATCHERS.get(cls).patcher);
+	}
+
+	/**
+	 * Like {@link #of(Class)}, counting the patch towards runtime generation of a patcher for the class.
+	 */
+	@SuppressWarnings("unchecked")
+	@NotNull static <T> Optional<GeneratedPatcher<T>> forPatch(@NotNull Class<T> cls) {
+		Holder holder = PATCHERS.get(cls);
+		GeneratedPatcher<?> patcher = holder.patcher;
+		if (patcher == null && CODEGEN && holder.patches.get() < CODEGEN_THRESHOLD && holder.patches.incrementAndGet() == CODEGEN_THRESHOLD) {
+			CompletableFuture.runAsync(() -> RuntimePatcherGenerator.generate(cls).ifPresent(generated -> holder.patcher = generated), GENERATOR);
+		}
+		return Optional.ofNullable((GeneratedPatcher<T>) patcher);
+	}
+
+	private static Optional<GeneratedPatcher<?>> load(Class<?> type) {
+		Patchable patchable = type.getAnnotation(Patchable.class);
+		if (patchable == null || !patchable.value()) {
+			return Optional.empty();
+		}
+		try {
+			Class<?> patcher = Class.forName(type.getName() + PatcherModel.SUFFIX, true, type.getClassLoader());
+			GeneratedPatcher<?> generated = (GeneratedPatcher<?>) patcher.getConstructor().newInstance();
+			return generated.getType() == type ? Optional.of(generated) : Optional.empty();
+		} catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+			return Optional.empty();
+		}
+	}
+
+	private static final class Holder {
+		private final AtomicInteger patches = new AtomicInteger();
+		private volatile GeneratedPatcher<?> patcher;
+
+		private Holder(Class<?> type) {
+			patcher = load(type).orElse(null);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Writes the RFC 7396 merge patch that turns one instance into another, the reverse of {@link MergePatcherJson}.
+ *
+ * The properties are read through the same {@link ClassMetadata} as the patchers write them, so
+ * {@link BlackListed} members are left out. Sub objects are diffed recursively and their field name is only
+ * written once a value below it differs, so unchanged sub trees cost nothing in the output. A property that
+ * became null is written as a json null, which the merge patcher sets. A sub object that was null, or whose
+ * class changed, is written in full with every property, nulls included, and created from it by the merge
+ * patcher. A class change can not be expressed, the full sub object is merged into the existing one. Maps are
+ * diffed key by key, a removed key, or one that became null, is written as a json null which removes it, maps
+ * nested in maps are diffed the same way. Other containers and map values are compared with {@code equals} and
+ * written whole, which needs a generator with a codec.
+ *
+ * The {@link RecursivePatcherJson} ignores nulls and merges objects into existing sub objects only, so it applies
+ * the diff correctly only when no value became null and no sub object was null.
+ */
+public class JsonDiff extends JsonObjectPatcher {
+	/**
+	 * The diff as a tree, an empty object if the instances do not differ.
+	 */
+	@NotNull public static <T> ObjectNode DIFF(@NotNull T previous, @NotNull T current) throws PatcherException {
+		try (TokenBuffer buffer = new TokenBuffer(objectMapper, false)) {
+			DIFF(previous, current, buffer);
+			JsonNode tree = readTree(buffer.asParser(objectMapper));
+			return (ObjectNode) tree;
+		} catch (IOException e) {
+			throw new PatcherException("Unable to diff " + current.getClass().getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * Write the diff as utf-8 json to the stream, which is flushed but left open.
+	 */
+	public static <T> void DIFF(@NotNull T previous, @NotNull T current, @NotNull OutputStream out) throws PatcherException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			DIFF(previous, current, generator);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to diff " + current.getClass().getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * Write the diff as a json object to the generator.
+	 */
+	public static <T> void DIFF(@NotNull T previous, @NotNull T current, @NotNull JsonGenerator generator) throws IOException {
+		if (previous.getClass() != current.getClass()) {
+			throw new PatcherException("Unable to diff a " + previous.getClass().getSimpleName() + " with a " + current.getClass().getSimpleName());
+		}
+		Frame root = new Frame(null, null);
+		DIFF_OBJECT(previous, current, root, generator);
+		if (!root.started) {
+			generator.writeStartObject();
+		}
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Diff the properties of the object, without a previous object every property is written.
+	 */
+	private static void DIFF_OBJECT(Object previous, Object current, Frame frame, JsonGenerator generator) throws IOException {
+		if (previous == null) {
+			frame.start(generator);
+		}
+		for (PropertyMetadata property : ClassMetadata.of(current.getClass()).getProperties()) {
+			if (!property.isReadable() || isAlias(property)) {
+				continue;
+			}
+			Object currentValue = property.get(current).orElse(null);
+			Object previousValue = previous == null ? null : property.get(previous).orElse(null);
+			if (currentValue != null && isObject(currentValue)) {
+				Frame sub = new Frame(frame, property.getName());
+				DIFF_OBJECT(previousValue != null && previousValue.getClass() == currentValue.getClass() ? previousValue : null, currentValue, sub, generator);
+				if (sub.started) {
+					generator.writeEndObject();
+				}
+			} else if (currentValue instanceof Map && previousValue instanceof Map) {
+				Frame sub = new Frame(frame, property.getName());
+				DIFF_MAP((Map<?, ?>) previousValue, (Map<?, ?>) currentValue, sub, generator);
+				if (sub.started) {
+					generator.writeEndObject();
+				}
+			} else if (property.isWritable() && (previous == null || !Objects.equals(previousValue, currentValue))) {
+				frame.start(generator);
+				generator.writeFieldName(property.getName());
+				generator.writeObject(currentValue);
+			}
+		}
+	}
+
+	/**
+	 * Diff the maps key by key, a removed key is written as a null.
+	 */
+	private static void DIFF_MAP(Map<?, ?> previous, Map<?, ?> current, Frame frame, JsonGenerator generator) throws IOException {
+		for (Map.Entry<?, ?> entry : current.entrySet()) {
+			Object previousValue = previous.get(entry.getKey());
+			if (entry.getValue() instanceof Map && previousValue instanceof Map) {
+				Frame sub = new Frame(frame, String.valueOf(entry.getKey()));
+				DIFF_MAP((Map<?, ?>) previousValue, (Map<?, ?>) entry.getValue(), sub, generator);
+				if (sub.started) {
+					generator.writeEndObject();
+				}
+			} else if (!previous.containsKey(entry.getKey()) || !Objects.equals(previousValue, entry.getValue())) {
+				frame.start(generator);
+				generator.writeFieldName(String.valueOf(entry.getKey()));
+				generator.writeObject(entry.getValue());
+			}
+		}
+		for (Object key : previous.keySet()) {
+			if (!current.containsKey(key)) {
+				frame.start(generator);
+				generator.writeFieldName(String.valueOf(key));
+				generator.writeNull();
+			}
+		}
+	}
+
+	/**
+	 * Whether the value is a sub object to diff property by property.
+	 */
+	private static boolean isObject(Object value) {
+		Class<?> cls = value.getClass();
+		return !ObjectPatcher.isContainer(value) && !cls.isArray() && !cls.isEnum() && !cls.getName().startsWith("java.")
+			&& !ClassMetadata.of(cls).getProperties().isEmpty();
+	}
+
+	/**
+	 * Whether the property is a public field that is also, and primarily, indexed by its json property name.
+	 */
+	private static boolean isAlias(PropertyMetadata property) {
+		if (property.getSetter().isPresent() || property.getGetter().isPresent()) {
+			return false;
+		}
+		Optional<String> jsonName = property.getField()
+			.flatMap(field -> ObjectPatcher.getAnnotation(field, JsonProperty.class))
+			.map(JsonProperty::value)
+			.filter(name -> !name.isEmpty());
+		return jsonName.isPresent() && !jsonName.get().equals(property.getName());
+	}
+
+	/**
+	 * An object of the diff whose start is only written once a value in it differs.
+	 */
+	private static final class Frame {
+		private final Frame parent;
+		private final String name;
+		private boolean started;
+
+		private Frame(Frame parent, String name) {
+			this.parent = parent;
+			this.name = name;
+		}
+
+		private void start(JsonGenerator generator) throws IOException {
+			if (started) {
+				return;
+			}
+			if (parent != null) {
+				parent.start(generator);
+				generator.writeFieldName(name);
+			}
+			generator.writeStartObject();
+			started = true;
+		}
+	}
+}
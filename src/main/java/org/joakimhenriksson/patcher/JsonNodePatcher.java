@@ -0,0 +1,317 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, thread safe {@link Patcher} of json trees with its own settings and caches.
+ *
+ * Unlike the static {@code PATCH} methods, which share one global {@code ObjectMapper} and cache, every instance
+ * parses with its own {@link ObjectMapper}, resolves properties into its own bounded metadata cache, links them with
+ * its own {@link AccessorBackend} and reports to its own {@link PatchMetrics}. The superclasses and interfaces of a
+ * class are resolved into the same cache and count towards its size. Instances are created with {@link #builder()}.
+ */
+public final class JsonNodePatcher implements Patcher<JsonNode> {
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private final ObjectMapper objectMapper;
+	private final AccessorBackend accessorBackend;
+	private final boolean generated;
+	private final PatchLimits limits;
+	private final PatchMetrics metrics;
+	private final SubObjectFactory subObjectFactory;
+	private final LoadingCache<Class<?>, ClassMetadata> metadata;
+	private final Context context = new Context();
+
+	private JsonNodePatcher(Builder builder) {
+		this.objectMapper = builder.objectMapper;
+		this.accessorBackend = builder.accessorBackend;
+		this.generated = builder.generated && builder.subObjectFactory == SubObjectFactory.NONE;
+		this.limits = builder.limits;
+		this.metrics = builder.metrics;
+		this.subObjectFactory = builder.subObjectFactory;
+		this.metadata = CacheBuilder.newBuilder()
+			                .maximumSize(builder.cacheSize)
+			                .weakKeys()
+			                .build(CacheLoader.from(this::resolve));
+	}
+
+	@NotNull public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public <T> T patch(JsonNode patch, T patchableValue) {
+		return patchFields(patch, patchableValue, x -> true);
+	}
+
+	/**
+	 * Patch the fields whose value node passes the filter.
+	 */
+	@Override
+	public <T> T patch(JsonNode patch, T patchableValue, Predicate<JsonNode> filter) {
+		return patchFields(patch, patchableValue, entry -> filter.test(entry.getValue()));
+	}
+
+	/**
+	 * Patch the fields that pass the predicate, the predicate is passed on to sub objects.
+	 */
+	public <T> T patchFields(@NotNull JsonNode patch, T patchableValue, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		if (patchableValue != null) {
+			limits.checkTree(patch);
+			long start = System.nanoTime();
+			int properties = patchObject(patch, patchableValue, predicate);
+			metrics.patched(patchableValue.getClass(), properties, System.nanoTime() - start);
+		}
+		return patchableValue;
+	}
+
+	/**
+	 * Parse and patch within the limits, the json is checked token by token before it is read into a tree.
+	 */
+	public <T> T patch(@NotNull String json, T patchableValue) throws PatcherException {
+		limits.checkPayloadSize(json.length());
+		try {
+			return patch(parse(objectMapper.getFactory().createParser(json)), patchableValue);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to parse patch", e);
+		}
+	}
+
+	/**
+	 * Parse and patch within the limits, the stream is left open and reading it fails once it exceeds the payload size.
+	 */
+	public <T> T patch(@NotNull InputStream json, T patchableValue) throws PatcherException {
+		try {
+			return patch(parse(objectMapper.getFactory().createParser(limits.limit(json)).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)), patchableValue);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to parse patch", e);
+		}
+	}
+
+	/**
+	 * Resolve and link the properties of the classes up front, so the first patch of each does not pay for it.
+	 */
+	public JsonNodePatcher warm(@NotNull Class<?>... classes) {
+		for (Class<?> cls : classes) {
+			metadata.getUnchecked(cls).getProperties().forEach(property -> property.getWriter(accessorBackend));
+		}
+		return this;
+	}
+
+	/**
+	 * Check the tokens against the limits while buffering them, so a deep patch is rejected before the recursive
+	 * tree reader sees it, then read the tree from the buffer.
+	 */
+	private JsonNode parse(JsonParser parser) throws IOException {
+		long start = System.nanoTime();
+		try (JsonParser parsing = parser; TokenBuffer buffer = new TokenBuffer(parsing)) {
+			buffer.forceUseOfBigDecimal(objectMapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS));
+			limits.checkTokens(parsing, buffer);
+			JsonNode tree = objectMapper.readTree(buffer.asParser(objectMapper));
+			return tree == null ? MissingNode.getInstance() : tree;
+		} finally {
+			metrics.parsed(System.nanoTime() - start);
+		}
+	}
+
+	@NotNull public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	private ClassMetadata resolve(Class<?> type) {
+		long start = System.nanoTime();
+		ClassMetadata resolved = ClassMetadata.create(type, metadata::getUnchecked);
+		metrics.metadataResolved(type, System.nanoTime() - start);
+		return resolved;
+	}
+
+	/**
+	 * @return the number of properties written to the object and its sub objects
+	 */
+	private int patchObject(JsonNode tree, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		if (patchable == null || !tree.isObject() || ObjectPatcher.isContainer(patchable)) {
+			return 0;
+		}
+		Optional<? extends GeneratedPatcher<?>> generatedPatcher = generated ? GeneratedPatchers.of(patchable.getClass()) : Optional.empty();
+		if (generatedPatcher.isPresent()) {
+			return patchGenerated(generatedPatcher.get(), tree, patchable, predicate, context);
+		}
+		ClassMetadata classMetadata = metadata(patchable.getClass());
+		int properties = 0;
+		Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			if (predicate.test(field)) {
+				properties += patchField(classMetadata, field.getKey(), field.getValue(), patchable, predicate);
+			} else {
+				metrics.skipped(patchable.getClass(), field.getKey());
+			}
+		}
+		return properties;
+	}
+
+	private ClassMetadata metadata(Class<?> type) {
+		metrics.metadataRequested(type);
+		return metadata.getUnchecked(type);
+	}
+
+	private int patchField(ClassMetadata classMetadata, String name, JsonNode value, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		Optional<PropertyMetadata> property = classMetadata.getProperty(name);
+		if (property.isPresent()) {
+			return patchProperty(property.get(), value, patchable, predicate);
+		}
+		if (classMetadata.isBlackListed(name)) {
+			metrics.blackListed(patchable.getClass(), name);
+		}
+		return 0;
+	}
+
+	private int patchProperty(PropertyMetadata property, JsonNode value, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		if (value.isContainerNode() && property.isReadable()) {
+			PropertyAccessor accessor = property.getAccessor(accessorBackend);
+			Object sub = accessor.get(patchable);
+			if (sub != null && RecursivePatcherJson.PATCH_CONTAINER(value, sub, property)) {
+				return 1;
+			}
+			if (sub == null && value.isObject() && property.isWritable()) {
+				Object created = subObjectFactory.create(property.getType());
+				if (created != null) {
+					int properties = patchObject(value, created, predicate);
+					accessor.set(patchable, created);
+					return properties + 1;
+				}
+			}
+			return patchObject(value, sub, predicate);
+		} else if (value.isValueNode() && !value.isNull() && property.isWritable()) {
+			property.getWriter(accessorBackend).write(patchable, (ValueNode) value);
+			return 1;
+		}
+		return 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> int patchGenerated(GeneratedPatcher<T> patcher, JsonNode tree, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate, GeneratedPatcher.Context context) {
+		return patcher.patchTree(tree, (T) patchable, predicate, context);
+	}
+
+	/**
+	 * Hands the sub objects and unhandled fields of a generated patcher back to this patcher, so they are patched
+	 * with its settings and reported to its metrics.
+	 */
+	private final class Context implements GeneratedPatcher.Context {
+		@Override
+		public int patchObject(@NotNull JsonNode tree, Object patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate) {
+			return JsonNodePatcher.this.patchObject(tree, patchable, predicate);
+		}
+
+		@Override
+		public int patchField(@NotNull String name, @NotNull JsonNode value, @NotNull Object patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> predicate) {
+			return JsonNodePatcher.this.patchField(metadata(patchable.getClass()), name, value, patchable, predicate);
+		}
+
+		@Override
+		public void skipped(@NotNull Class<?> type, @NotNull String name) {
+			metrics.skipped(type, name);
+		}
+
+		@Override
+		public void blackListed(@NotNull Class<?> type, @NotNull String name) {
+			metrics.blackListed(type, name);
+		}
+	}
+
+	public static final class Builder {
+		private ObjectMapper objectMapper;
+		private int cacheSize = DEFAULT_CACHE_SIZE;
+		private AccessorBackend accessorBackend = AccessorBackend.DEFAULT;
+		private boolean generated = true;
+		private PatchLimits limits = PatchLimits.DEFAULT;
+		private PatchMetrics metrics = PatchMetrics.NONE;
+		private SubObjectFactory subObjectFactory = SubObjectFactory.NONE;
+
+		private Builder() {
+		}
+
+		public Builder objectMapper(@NotNull ObjectMapper objectMapper) {
+			this.objectMapper = objectMapper;
+			return this;
+		}
+
+		public Builder jsonFactory(@NotNull JsonFactory jsonFactory) {
+			return objectMapper(new ObjectMapper(jsonFactory));
+		}
+
+		/**
+		 * The maximum number of classes, superclasses and interfaces included, to keep resolved metadata for.
+		 */
+		public Builder metadataCacheSize(int cacheSize) {
+			if (cacheSize < 0) {
+				throw new IllegalArgumentException("Cache size must not be negative: " + cacheSize);
+			}
+			this.cacheSize = cacheSize;
+			return this;
+		}
+
+		public Builder accessorBackend(@NotNull AccessorBackend accessorBackend) {
+			this.accessorBackend = accessorBackend;
+			return this;
+		}
+
+		/**
+		 * Whether to use the {@link GeneratedPatchers generated patcher} of a class when there is one,
+		 * its sub objects and the fields it does not handle are still patched with the settings of this patcher.
+		 */
+		public Builder generatedPatchers(boolean generated) {
+			this.generated = generated;
+			return this;
+		}
+
+		/**
+		 * The limits of every patch, a tree exceeding them fails with a {@link PatchLimitException} before anything
+		 * is patched, a json string exceeding the payload size before it is parsed.
+		 */
+		public Builder limits(@NotNull PatchLimits limits) {
+			this.limits = limits;
+			return this;
+		}
+
+		public Builder metrics(@NotNull PatchMetrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+
+		/**
+		 * How to create the null sub objects the patch has an object for, by default they are left null.
+		 * Generated patchers leave them null, so they are not used unless the factory is {@link SubObjectFactory#NONE}.
+		 */
+		public Builder subObjectFactory(@NotNull SubObjectFactory subObjectFactory) {
+			this.subObjectFactory = subObjectFactory;
+			return this;
+		}
+
+		@NotNull public JsonNodePatcher build() {
+			if (objectMapper == null) {
+				objectMapper = new ObjectMapper();
+			}
+			return new JsonNodePatcher(this);
+		}
+	}
+}
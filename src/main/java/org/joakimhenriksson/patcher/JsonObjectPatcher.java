@@ -1,22 +1,32 @@
 package org.joakimhenriksson.patcher;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
-import com.jcabi.aspects.Loggable;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.String;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -26,25 +36,107 @@ import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Slf4j
 public class JsonObjectPatcher {
-	protected static final int LOGLEVEL = Loggable.ERROR;
 	private static final String GET = "get";
 	private static final String SET = "set";
 	protected static final Logger LOGGER = LoggerFactory.getLogger(JsonObjectPatcher.class);
 
 	protected static final ObjectMapper objectMapper = new ObjectMapper();
+	private static final Map<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+	@NotNull protected static JsonParser createParser(@NotNull String json) throws IOException {
+		return objectMapper.getFactory().createParser(json);
+	}
+
+	@NotNull protected static JsonParser createParser(@NotNull byte[] json, int offset, int length) throws IOException {
+		return objectMapper.getFactory().createParser(json, offset, length);
+	}
+
+	/**
+	 * The stream belongs to the caller, closing the parser does not close it.
+	 */
+	@NotNull protected static JsonParser createParser(@NotNull InputStream json) throws IOException {
+		return objectMapper.getFactory().createParser(json).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+	}
+
+	/**
+	 * Heap buffers are parsed from their backing array, direct buffers are streamed without copying them to the heap.
+	 */
+	@NotNull protected static JsonParser createParser(@NotNull ByteBuffer json) throws IOException {
+		if (json.hasArray()) {
+			return createParser(json.array(), json.arrayOffset() + json.position(), json.remaining());
+		}
+		return createParser(new ByteBufferBackedInputStream(json.duplicate()));
+	}
+
+	/**
+	 * The file is memory-mapped, unless it is too large for a single mapping in which case it is streamed.
+	 */
+	@NotNull protected static JsonParser createParser(@NotNull Path json) throws IOException {
+		try (FileChannel channel = FileChannel.open(json, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				return objectMapper.getFactory().createParser(Files.newInputStream(json));
+			}
+			return createParser(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	/**
+	 * Read the tree and close the parser, an empty source reads as a {@link MissingNode}.
+	 */
+	@NotNull protected static JsonNode readTree(@NotNull JsonParser parser) throws IOException {
+		long start = PatchTracer.ENABLED ? System.nanoTime() : 0L;
+		try (JsonParser closing = parser) {
+			JsonNode tree = objectMapper.readTree(closing);
+			return tree == null ? MissingNode.getInstance() : tree;
+		} finally {
+			if (PatchTracer.ENABLED) {
+				PatchTracer.METRICS.parsed(System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * Read the tree of the source, a failure is thrown as a {@link PatcherException} naming the source.
+	 */
+	@NotNull protected static JsonNode readTree(@NotNull ParserSource source, @NotNull String description) throws PatcherException {
+		try {
+			return readTree(source.open());
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall " + description, e);
+		}
+	}
+
+	/**
+	 * Opens a parser over one of the sources the patchers read, e.g. {@code () -> createParser(path)}.
+	 */
+	@FunctionalInterface
+	protected interface ParserSource {
+		@NotNull JsonParser open() throws IOException;
+	}
+
+	/**
+	 * Convert a json value of any kind to the generic type, e.g. an array to a {@code List<String>}, with a reader cached per type.
+	 */
+	protected static Object convertValue(@NotNull JsonNode value, @NotNull JavaType type) throws PatcherException {
+		try {
+			return READERS.computeIfAbsent(type, objectMapper::readerFor).readValue(value);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to convert " + value + " to " + type, e);
+		}
+	}
 
-	@Loggable(LOGLEVEL)
 	protected static Optional<Object> getOptionalFieldValue(ValueNode value) {
 		return Optional.of(getFieldValue(value));
 	}
 
-	@Loggable(LOGLEVEL)
 	@NotNull protected static Object getFieldValue(@NotNull ValueNode value) {
 		if (value.isTextual()) {
 			return value.asText();
@@ -52,14 +144,21 @@ public class JsonObjectPatcher {
 		if (value.isBoolean()) {
 			return value.asBoolean();
 		}
-		if (value.isInt()) {
-			return value.asInt();
-		}
-		if (value.isDouble()) {
-			return value.asDouble();
-		}
-		if (value.isFloat() || value.isFloatingPointNumber()) {
-			return value.floatValue();
+		if (value.isNumber()) {
+			switch (value.numberType()) {
+				case INT:
+					return value.isShort() ? (Object) value.shortValue() : (Object) value.intValue();
+				case LONG:
+					return value.longValue();
+				case BIG_INTEGER:
+					return value.bigIntegerValue();
+				case FLOAT:
+					return value.floatValue();
+				case DOUBLE:
+					return value.doubleValue();
+				default:
+					return value.decimalValue();
+			}
 		}
 		if (value.isBinary()) {
 			try {
@@ -68,15 +167,36 @@ public class JsonObjectPatcher {
 				throw new PatcherException("Unable to get the binary value from " + value);
 			}
 		}
-		if (value.isLong()) {
-			return value.asLong();
-		}
-		if (value.isShort()) {
-			return value.shortValue();
-		}
-		if (value.isBigInteger()) {
-			return value.bigIntegerValue();
-		}
 		throw new NoSuchElementException("Unsupported Value type" + value);
 	}
+
+	/**
+	 * The scalar value of the current token of the parser, empty for a json null.
+	 */
+	@NotNull protected static Optional<Object> getOptionalFieldValue(@NotNull JsonParser parser) throws IOException {
+		switch (parser.currentToken()) {
+			case VALUE_STRING:
+				return Optional.of(parser.getText());
+			case VALUE_TRUE:
+			case VALUE_FALSE:
+				return Optional.of(parser.getBooleanValue());
+			case VALUE_NUMBER_INT:
+				switch (parser.getNumberType()) {
+					case INT:
+						return Optional.of(parser.getIntValue());
+					case LONG:
+						return Optional.of(parser.getLongValue());
+					default:
+						return Optional.of(parser.getBigIntegerValue());
+				}
+			case VALUE_NUMBER_FLOAT:
+				return Optional.of(parser.getDoubleValue());
+			case VALUE_EMBEDDED_OBJECT:
+				return Optional.ofNullable(parser.getEmbeddedObject());
+			case VALUE_NULL:
+				return Optional.empty();
+			default:
+				throw new NoSuchElementException("Unsupported Value type" + parser.currentToken());
+		}
+	}
 }
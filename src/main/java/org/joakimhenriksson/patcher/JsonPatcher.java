@@ -2,6 +2,10 @@ package org.joakimhenriksson.patcher;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 
@@ -13,4 +17,58 @@ public abstract class JsonPatcher {
 	public void patch(String json, Predicate<Map.Entry<String, JsonNode>> filter) throws PatcherException {
 		RecursivePatcherJson.PATCH(json, this, filter);
 	}
+
+	/**
+	 * Apply the patches as one, with the same result as applying them in order, see {@link RecursivePatcherJson#PATCH_COALESCED}.
+	 */
+	public void patch(List<String> jsons) throws PatcherException {
+		patch(jsons, x -> true);
+	}
+
+	public void patch(List<String> jsons, Predicate<Map.Entry<String, JsonNode>> filter) throws PatcherException {
+		RecursivePatcherJson.PATCH_COALESCED(jsons, this, filter);
+	}
+
+	/**
+	 * Parse the patch once and apply it to all the patchers.
+	 */
+	public static void patchAll(String json, Iterable<? extends JsonPatcher> patchers) throws PatcherException {
+		patchAll(json, patchers, x -> true);
+	}
+
+	public static void patchAll(String json, Iterable<? extends JsonPatcher> patchers, Predicate<Map.Entry<String, JsonNode>> filter) throws PatcherException {
+		RecursivePatcherJson.PATCH_ALL(json, patchers, filter);
+	}
+
+	public void patch(byte[] json, int offset, int length) throws PatcherException {
+		patch(json, offset, length, x -> true);
+	}
+
+	public void patch(byte[] json, int offset, int length, Predicate<Map.Entry<String, JsonNode>> filter) throws PatcherException {
+		RecursivePatcherJson.PATCH(json, offset, length, this, filter);
+	}
+
+	public void patch(InputStream json) throws PatcherException {
+		patch(json, x -> true);
+	}
+
+	public void patch(InputStream json, Predicate<Map.Entry<String, JsonNode>> filter) throws PatcherException {
+		RecursivePatcherJson.PATCH(json, this, filter);
+	}
+
+	public void patch(ByteBuffer json) throws PatcherException {
+		patch(json, x -> true);
+	}
+
+	public void patch(ByteBuffer json, Predicate<Map.Entry<String, JsonNode>> filter) throws PatcherException {
+		RecursivePatcherJson.PATCH(json, this, filter);
+	}
+
+	public void patch(Path json) throws PatcherException {
+		patch(json, x -> true);
+	}
+
+	public void patch(Path json, Predicate<Map.Entry<String, JsonNode>> filter) throws PatcherException {
+		RecursivePatcherJson.PATCH(json, this, filter);
+	}
 }
@@ -6,6 +6,7 @@ import lombok.ToString;
 
 import java.util.*;
 
+@Patchable
 @ToString
 @EqualsAndHashCode(callSuper = true)
 class JsonPatcherObject extends JsonPatcher {
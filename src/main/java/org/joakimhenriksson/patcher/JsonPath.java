@@ -0,0 +1,110 @@
+package org.joakimhenriksson.patcher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.EqualsAndHashCode;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled RFC 6901 json pointer, e.g. {@code /sub/strong}, split into its unescaped reference tokens.
+ *
+ * Compiled paths are kept in a bounded cache, whose size is set by the system property
+ * {@value #CACHE_SIZE_PROPERTY}, so the paths of recurring operations are only parsed once.
+ */
+@EqualsAndHashCode(of = "path")
+public final class JsonPath {
+	public static final String CACHE_SIZE_PROPERTY = "objectpatcher.path.cacheSize";
+	private static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final Cache<String, JsonPath> PATHS = CacheBuilder.newBuilder()
+		.maximumSize(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE))
+		.build();
+
+	private final String path;
+	private final List<String> tokens;
+
+	private JsonPath(String path, List<String> tokens) {
+		this.path = path;
+		this.tokens = tokens;
+	}
+
+	/**
+	 * The cached path, compiling it on a miss.
+	 */
+	@NotNull public static JsonPath of(@NotNull String path) throws PatcherException {
+		JsonPath compiled = PATHS.getIfPresent(path);
+		if (compiled == null) {
+			compiled = compile(path);
+			PATHS.put(path, compiled);
+		}
+		return compiled;
+	}
+
+	@NotNull public static JsonPath compile(@NotNull String path) throws PatcherException {
+		if (path.isEmpty()) {
+			return new JsonPath(path, Collections.emptyList());
+		}
+		if (path.charAt(0) != '/') {
+			throw new PatcherException("Json pointer has to start with a '/': " + path);
+		}
+		List<String> tokens = new ArrayList<>();
+		for (String token : path.substring(1).split("/", -1)) {
+			tokens.add(unescape(token, path));
+		}
+		return new JsonPath(path, Collections.unmodifiableList(tokens));
+	}
+
+	private static String unescape(String token, String path) {
+		if (token.indexOf('~') < 0) {
+			return token;
+		}
+		StringBuilder unescaped = new StringBuilder(token.length());
+		for (int i = 0; i < token.length(); i++) {
+			char c = token.charAt(i);
+			if (c == '~') {
+				char next = ++i < token.length() ? token.charAt(i) : ' ';
+				if (next != '0' && next != '1') {
+					throw new PatcherException("Invalid escape in json pointer: " + path);
+				}
+				unescaped.append(next == '0' ? '~' : '/');
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+
+	public boolean isRoot() {
+		return tokens.isEmpty();
+	}
+
+	@NotNull public List<String> getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * The last reference token, the root has none.
+	 */
+	@NotNull public String getLast() {
+		if (isRoot()) {
+			throw new PatcherException("The root has no last reference token");
+		}
+		return tokens.get(tokens.size() - 1);
+	}
+
+	/**
+	 * Whether this path is a proper prefix of the other path.
+	 */
+	public boolean isAncestorOf(@NotNull JsonPath other) {
+		return other.tokens.size() > tokens.size() && other.tokens.subList(0, tokens.size()).equals(tokens);
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
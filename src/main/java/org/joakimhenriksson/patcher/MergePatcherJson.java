@@ -0,0 +1,132 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Applies an RFC 7396 json merge patch directly to an object graph.
+ *
+ * Objects in the patch are merged into the sub objects and maps of the target, a null removes the map entry or
+ * sets the property to null, primitive properties are left unchanged by a null. Arrays replace the contents of
+ * the collection in place, any other value is converted to the declared generic type of the property or map.
+ */
+public class MergePatcherJson extends JsonObjectPatcher {
+	public static <T> Optional<T> PATCH(@NotNull String json, T patchable) throws PatcherException {
+		try {
+			return PATCH(readTree(createParser(json)), patchable);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+		}
+	}
+
+	public static <T> Optional<T> PATCH(@NotNull JsonNode patch, T patchable) throws PatcherException {
+		if (patchable != null) {
+			if (!patch.isObject()) {
+				throw new PatcherException("A merge patch can not replace the root object");
+			}
+			MERGE(patch, patchable, TypeFactory.defaultInstance().constructType(patchable.getClass()));
+		}
+		return Optional.ofNullable(patchable);
+	}
+
+	/**
+	 * Merge the object into the target, a map or an object with properties.
+	 */
+	static void MERGE(@NotNull JsonNode patch, @NotNull Object target, @NotNull JavaType type) throws PatcherException {
+		if (target instanceof Map) {
+			MERGE_MAP(patch, castMap(target), type.getContentType() != null ? type.getContentType() : TypeFactory.unknownType());
+			return;
+		}
+		ClassMetadata metadata = ClassMetadata.of(target.getClass());
+		Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			Optional<PropertyMetadata> property = metadata.getProperty(field.getKey());
+			if (property.isPresent()) {
+				MERGE_PROPERTY(field.getValue(), target, property.get());
+			}
+		}
+	}
+
+	private static void MERGE_PROPERTY(JsonNode value, Object target, PropertyMetadata property) {
+		if (value.isNull()) {
+			if (!property.getType().isPrimitive()) {
+				property.set(target, null);
+			}
+			return;
+		}
+		Object current = value.isContainerNode() ? property.get(target).orElse(null) : null;
+		if (value.isObject() && isMergeable(current)) {
+			MERGE(value, current, property.getJavaType());
+		} else if (value.isArray() && current instanceof Collection) {
+			REPLACE_ALL(value, castCollection(current), property.getJavaType());
+		} else if (value.isValueNode()) {
+			property.getWriter().write(target, (ValueNode) value);
+		} else {
+			property.set(target, convertValue(value, property.getJavaType()));
+		}
+	}
+
+	private static void MERGE_MAP(JsonNode patch, Map<String, Object> target, JavaType valueType) {
+		Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			JsonNode value = field.getValue();
+			Object current = target.get(field.getKey());
+			if (value.isNull()) {
+				target.remove(field.getKey());
+			} else if (value.isObject() && isMergeable(current)) {
+				MERGE(value, current, valueType);
+			} else {
+				target.put(field.getKey(), convertValue(value, valueType));
+			}
+		}
+	}
+
+	/**
+	 * Replace the elements of the collection in place with the elements of the array.
+	 */
+	static void REPLACE_ALL(@NotNull JsonNode array, @NotNull Collection<Object> target, @NotNull JavaType type) throws PatcherException {
+		target.clear();
+		ADD_ALL(array, target, type);
+	}
+
+	/**
+	 * Add the elements of the array to the collection, i.e. append them to a list.
+	 */
+	static void ADD_ALL(@NotNull JsonNode array, @NotNull Collection<Object> target, @NotNull JavaType type) throws PatcherException {
+		JavaType elementType = type.getContentType() != null ? type.getContentType() : TypeFactory.unknownType();
+		for (JsonNode element : array) {
+			target.add(convertValue(element, elementType));
+		}
+	}
+
+	/**
+	 * Whether the value is a map or an object with properties to merge an object into.
+	 */
+	private static boolean isMergeable(Object value) {
+		if (value == null) {
+			return false;
+		}
+		return value instanceof Map || !ObjectPatcher.isContainer(value) && !value.getClass().getName().startsWith("java.");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> castMap(Object map) {
+		return (Map<String, Object>) map;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Collection<Object> castCollection(Object collection) {
+		return (Collection<Object>) collection;
+	}
+}
@@ -0,0 +1,250 @@
+package org.joakimhenriksson.patcher;
+
+import com.google.common.primitives.Primitives;
+
+import javax.validation.constraints.NotNull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link PropertyAccessor} invoking {@link MethodHandle}s that are linked once per property.
+ *
+ * The generic handles are adapted to {@code (Object, Object)void} and {@code (Object)Object} so the
+ * writes go through {@code invokeExact} without a varargs array. Primitive properties additionally
+ * get an exact-typed setter, e.g. {@code (Object, int)void}, that is used by the primitive setters, and
+ * boxed numbers of a narrower type, e.g. an {@link Integer} for a {@code long}, are widened onto it as
+ * reflection does instead of relying on the unboxing of the generic handle.
+ */
+final class MethodHandleAccessor implements PropertyAccessor {
+	private static final MethodType GENERIC_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType GENERIC_GETTER = MethodType.methodType(Object.class, Object.class);
+	private static final List<Class<?>> WIDENING = Arrays.asList(Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class);
+
+	private final String name;
+	private final Class<?> primitiveType;
+	private final Class<?> wrapperType;
+	private final MethodHandle setter;
+	private final MethodHandle exactSetter;
+	private final MethodHandle getter;
+
+	private MethodHandleAccessor(String name, Class<?> primitiveType, MethodHandle setter, MethodHandle exactSetter, MethodHandle getter) {
+		this.name = name;
+		this.primitiveType = primitiveType;
+		this.wrapperType = primitiveType == null ? null : Primitives.wrap(primitiveType);
+		this.setter = setter;
+		this.exactSetter = exactSetter;
+		this.getter = getter;
+	}
+
+	/**
+	 * Link the accessor, empty if any of the members could not be unreflected.
+	 */
+	static Optional<PropertyAccessor> link(@NotNull PropertyMetadata property) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			MethodHandle setter = null;
+			Optional<Method> setterMethod = property.getSetter();
+			Optional<Field> field = property.getField();
+			if (setterMethod.isPresent()) {
+				setter = lookup.unreflect(setterMethod.get());
+			} else if (field.isPresent()) {
+				setter = lookup.unreflectSetter(field.get());
+			}
+
+			MethodHandle getter = null;
+			Optional<Method> getterMethod = property.getGetter();
+			if (getterMethod.isPresent()) {
+				getter = lookup.unreflect(getterMethod.get());
+			} else if (field.isPresent()) {
+				getter = lookup.unreflectGetter(field.get());
+			}
+
+			Class<?> primitiveType = null;
+			MethodHandle exactSetter = null;
+			if (setter != null && setter.type().parameterType(1).isPrimitive()) {
+				primitiveType = setter.type().parameterType(1);
+				exactSetter = setter.asType(MethodType.methodType(void.class, Object.class, primitiveType));
+			}
+			return Optional.of(new MethodHandleAccessor(property.getName(),
+				primitiveType,
+				setter == null ? null : setter.asType(GENERIC_SETTER),
+				exactSetter,
+				getter == null ? null : getter.asType(GENERIC_GETTER)));
+		} catch (IllegalAccessException | SecurityException e) {
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public void set(@NotNull Object target, Object value) throws PatcherException {
+		if (primitiveType != null && value != null && value.getClass() != wrapperType && setWidened(target, value)) {
+			return;
+		}
+		if (setter != null) {
+			try {
+				setter.invokeExact(target, value);
+			} catch (Throwable t) {
+				throw failure("Unable to set value to property ", t);
+			}
+		}
+	}
+
+	@Override
+	public Object get(@NotNull Object target) throws PatcherException {
+		if (getter != null) {
+			try {
+				return (Object) getter.invokeExact(target);
+			} catch (Throwable t) {
+				throw failure("Unable to get value from property ", t);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void setBoolean(@NotNull Object target, boolean value) throws PatcherException {
+		if (primitiveType != boolean.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	@Override
+	public void setByte(@NotNull Object target, byte value) throws PatcherException {
+		if (primitiveType != byte.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	@Override
+	public void setChar(@NotNull Object target, char value) throws PatcherException {
+		if (primitiveType != char.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	@Override
+	public void setShort(@NotNull Object target, short value) throws PatcherException {
+		if (primitiveType != short.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	@Override
+	public void setInt(@NotNull Object target, int value) throws PatcherException {
+		if (primitiveType != int.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	@Override
+	public void setLong(@NotNull Object target, long value) throws PatcherException {
+		if (primitiveType != long.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	@Override
+	public void setFloat(@NotNull Object target, float value) throws PatcherException {
+		if (primitiveType != float.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	@Override
+	public void setDouble(@NotNull Object target, double value) throws PatcherException {
+		if (primitiveType != double.class) {
+			set(target, value);
+			return;
+		}
+		try {
+			exactSetter.invokeExact(target, value);
+		} catch (Throwable t) {
+			throw failure("Unable to set value to property ", t);
+		}
+	}
+
+	/**
+	 * Write a boxed number or character through the exact setter if it widens to the primitive type.
+	 *
+	 * @return false if the value does not widen, e.g. a {@link Long} for an {@code int}
+	 */
+	private boolean setWidened(Object target, Object value) {
+		// a char widens like an int, except to short
+		int from = value instanceof Character ? WIDENING.indexOf(Integer.class) - 1 : WIDENING.indexOf(value.getClass());
+		int to = WIDENING.indexOf(wrapperType);
+		if (from < 0 || to <= from) {
+			return false;
+		}
+		Number number = value instanceof Character ? Integer.valueOf((Character) value) : (Number) value;
+		if (primitiveType == short.class) {
+			setShort(target, number.shortValue());
+		} else if (primitiveType == int.class) {
+			setInt(target, number.intValue());
+		} else if (primitiveType == long.class) {
+			setLong(target, number.longValue());
+		} else if (primitiveType == float.class) {
+			setFloat(target, number.floatValue());
+		} else {
+			setDouble(target, number.doubleValue());
+		}
+		return true;
+	}
+
+	private PatcherException failure(String message, Throwable t) {
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		if (t instanceof PatcherException) {
+			return (PatcherException) t;
+		}
+		return new PatcherException(message + name, t);
+	}
+}
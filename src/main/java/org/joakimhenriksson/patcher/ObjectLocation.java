@@ -0,0 +1,269 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The location a {@link JsonPath} points to in an object graph: a property of an object, an entry of a map or
+ * an element of a collection, with the generic type of the values it holds.
+ *
+ * The container is edited in place, a collection that is not a list is addressed by its iteration order. Every
+ * edit returns an {@link Undo} restoring the container, a map or a collection that is not a list is restored from a
+ * copy of its contents taken before removing from it.
+ */
+final class ObjectLocation {
+	private static final String END = "-";
+
+	/**
+	 * Reverts a single edit of a location.
+	 */
+	@FunctionalInterface
+	interface Undo {
+		void undo() throws PatcherException;
+	}
+
+	private final JsonPath path;
+	private final Object parent;
+	private final JavaType parentType;
+	private final String key;
+
+	private ObjectLocation(JsonPath path, Object parent, JavaType parentType, String key) {
+		this.path = path;
+		this.parent = parent;
+		this.parentType = parentType;
+		this.key = key;
+	}
+
+	/**
+	 * Resolve the parent of the location, which has to exist.
+	 */
+	@NotNull static ObjectLocation of(@NotNull Object root, @NotNull JsonPath path) throws PatcherException {
+		if (path.isRoot()) {
+			throw new PatcherException("The root object can not be added, removed or replaced");
+		}
+		Object parent = root;
+		JavaType parentType = TypeFactory.defaultInstance().constructType(root.getClass());
+		List<String> tokens = path.getTokens();
+		for (int i = 0; i < tokens.size() - 1; i++) {
+			ObjectLocation location = new ObjectLocation(path, parent, parentType, tokens.get(i));
+			parent = location.get().orElseThrow(() -> new PatcherException("No value at " + path));
+			parentType = location.getType();
+		}
+		return new ObjectLocation(path, parent, parentType, path.getLast());
+	}
+
+	/**
+	 * The value at the location, empty if there is none.
+	 */
+	@NotNull Optional<Object> get() throws PatcherException {
+		if (parent instanceof Map) {
+			return Optional.ofNullable(((Map<?, ?>) parent).get(key));
+		}
+		if (parent instanceof List) {
+			List<?> list = (List<?>) parent;
+			int index = index(list.size() - 1);
+			return Optional.ofNullable(list.get(index));
+		}
+		if (parent instanceof Collection) {
+			Iterator<?> iterator = iterator();
+			return Optional.ofNullable(iterator.next());
+		}
+		return property().get(parent);
+	}
+
+	/**
+	 * The declared generic type of the values at the location.
+	 */
+	@NotNull JavaType getType() throws PatcherException {
+		if (parent instanceof Map || parent instanceof Collection) {
+			JavaType contentType = parentType.getContentType();
+			return contentType != null ? contentType : TypeFactory.unknownType();
+		}
+		return property().getJavaType();
+	}
+
+	/**
+	 * Insert the value, i.e. put it in a map, insert it into a collection or set the property.
+	 *
+	 * @return the undo restoring the container as it was
+	 */
+	@NotNull Undo add(Object value) throws PatcherException {
+		if (parent instanceof Map) {
+			Map<String, Object> map = map();
+			if (map.containsKey(key)) {
+				Object previous = map.put(key, value);
+				return () -> map.put(key, previous);
+			}
+			map.put(key, value);
+			return () -> map.remove(key);
+		}
+		if (parent instanceof List) {
+			List<Object> list = list();
+			int index = END.equals(key) ? list.size() : index(list.size());
+			list.add(index, value);
+			return () -> list.remove(index);
+		}
+		if (parent instanceof Collection) {
+			if (!END.equals(key)) {
+				index(((Collection<?>) parent).size());
+			}
+			Undo undo = snapshot();
+			collection().add(value);
+			return undo;
+		}
+		return set(value);
+	}
+
+	/**
+	 * Replace the existing value.
+	 *
+	 * @return the undo restoring the container as it was
+	 */
+	@NotNull Undo replace(Object value) throws PatcherException {
+		if (parent instanceof Map) {
+			Map<String, Object> map = map();
+			if (!map.containsKey(key)) {
+				throw new PatcherException("No value at " + path);
+			}
+			Object previous = map.put(key, value);
+			return () -> map.put(key, previous);
+		}
+		if (parent instanceof List) {
+			List<Object> list = list();
+			int index = index(list.size() - 1);
+			Object previous = list.set(index, value);
+			return () -> list.set(index, previous);
+		}
+		if (parent instanceof Collection) {
+			Undo undo = remove();
+			collection().add(value);
+			return undo;
+		}
+		return set(value);
+	}
+
+	/**
+	 * Remove the existing value, a property is set to null.
+	 *
+	 * @return the undo restoring the container as it was
+	 */
+	@NotNull Undo remove() throws PatcherException {
+		if (parent instanceof Map) {
+			if (!map().containsKey(key)) {
+				throw new PatcherException("No value at " + path);
+			}
+			Undo undo = snapshot();
+			map().remove(key);
+			return undo;
+		}
+		if (parent instanceof List) {
+			List<Object> list = list();
+			int index = index(list.size() - 1);
+			Object previous = list.remove(index);
+			return () -> list.add(index, previous);
+		}
+		if (parent instanceof Collection) {
+			Undo undo = snapshot();
+			Iterator<Object> iterator = iterator();
+			iterator.next();
+			iterator.remove();
+			return undo;
+		}
+		if (property().getType().isPrimitive()) {
+			throw new PatcherException("Unable to remove the primitive property at " + path);
+		}
+		return set(null);
+	}
+
+	/**
+	 * Set the property, the undo sets the value it had, which is not restored for a property without a getter or
+	 * field to read it from.
+	 */
+	private Undo set(Object value) throws PatcherException {
+		PropertyMetadata property = property();
+		Object previous = property.isReadable() ? property.get(parent).orElse(null) : null;
+		property.set(parent, value);
+		return property.isReadable() ? () -> property.set(parent, previous) : () -> {};
+	}
+
+	/**
+	 * An undo restoring the entries of the map or the elements of the collection, in their iteration order.
+	 */
+	private Undo snapshot() {
+		if (parent instanceof Map) {
+			Map<String, Object> map = map();
+			Map<String, Object> entries = new LinkedHashMap<>(map);
+			return () -> {
+				map.clear();
+				map.putAll(entries);
+			};
+		}
+		Collection<Object> collection = collection();
+		List<Object> elements = new ArrayList<>(collection);
+		return () -> {
+			collection.clear();
+			collection.addAll(elements);
+		};
+	}
+
+	private PropertyMetadata property() throws PatcherException {
+		return ClassMetadata.of(parent.getClass()).getProperty(key)
+			       .filter(property -> property.isReadable() || property.isWritable())
+			       .orElseThrow(() -> new PatcherException("No property at " + path));
+	}
+
+	/**
+	 * The index of the key, at most max.
+	 */
+	private int index(int max) throws PatcherException {
+		int index = -1;
+		if (!key.isEmpty() && key.length() < 10 && (key.equals("0") || key.charAt(0) != '0')) {
+			try {
+				index = Integer.parseInt(key);
+			} catch (NumberFormatException ignored) {
+				index = -1;
+			}
+		}
+		if (index < 0 || index > max) {
+			throw new PatcherException("Index out of bounds at " + path);
+		}
+		return index;
+	}
+
+	/**
+	 * An iterator positioned on the element of the key.
+	 */
+	private Iterator<Object> iterator() throws PatcherException {
+		Collection<Object> collection = collection();
+		int index = index(collection.size() - 1);
+		Iterator<Object> iterator = collection.iterator();
+		for (int i = 0; i < index; i++) {
+			iterator.next();
+		}
+		return iterator;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> map() {
+		return (Map<String, Object>) parent;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Object> list() {
+		return (List<Object>) parent;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Collection<Object> collection() {
+		return (Collection<Object>) parent;
+	}
+}
@@ -3,15 +3,12 @@ package org.joakimhenriksson.patcher;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
-import com.jcabi.aspects.Loggable;
 
 import javax.validation.constraints.NotNull;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AccessibleObject;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -24,7 +21,6 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class ObjectPatcher {
-	protected static final int LOGLEVEL = Loggable.ERROR;
 	private static final String GET = "get";
 	private static final String SET = "set";
 
@@ -36,70 +32,76 @@ public class ObjectPatcher {
 		return whiteList(blackList).negate();
 	}
 
-	@Loggable(LOGLEVEL)
+	/**
+	 * A filter patching only the fields at the dot separated paths and everything below them, e.g. {@code sub.strong}.
+	 */
+	@NotNull public static PatchFilter whiteList(@NotNull String... paths) {
+		if (paths.length == 0) {
+			return PatchFilter.NONE;
+		}
+		PatchFilter.Builder builder = PatchFilter.builder();
+		for (String path : paths) {
+			builder.allow(path);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * A filter patching everything but the fields at the dot separated paths and everything below them.
+	 */
+	@NotNull public static PatchFilter blackList(@NotNull String... paths) {
+		PatchFilter.Builder builder = PatchFilter.builder();
+		for (String path : paths) {
+			builder.deny(path);
+		}
+		return builder.build();
+	}
+
+	public static <T> void setFieldValue(@NotNull String name, @NotNull T patchable, Object value) {
+		ClassMetadata.of(patchable.getClass()).getProperty(name)
+			.ifPresent(property -> property.set(patchable, value));
+	}
+
+	public static <T> Optional<Object> getFieldValue(@NotNull String name, @NotNull T patchable) {
+		return ClassMetadata.of(patchable.getClass()).getProperty(name)
+			       .flatMap(property -> property.get(patchable));
+	}
+
 	public static <T> void setFieldValue(@NotNull String name, @NotNull T patchable, Object value, Predicate<AccessibleObject> predicate) {
 		Class<?> cls = patchable.getClass();
-		Optional<Method> method = getMethod(SET, name, cls, predicate);
-		try {
-			invoke(method, patchable, value);
-			return;
-		} catch (PatcherException ignored) {}
-		getField(name, cls, predicate).ifPresent(field -> setFieldValue(field, patchable, value));
+		Optional<Method> method = getMethod(SET, name, cls, predicate).filter(withoutAnnotation(BlackListed.class));
+		if (method.isPresent()) {
+			invoke(method.get(), patchable, value);
+		} else {
+			getField(name, cls, predicate).ifPresent(field -> field.set(patchable, value));
+		}
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T> Optional<Object> getFieldValue(@NotNull String name, @NotNull T patchable, Predicate<AccessibleObject> predicate) {
 		Class<?> cls = patchable.getClass();
-		Optional<Method> method = getMethod(GET, name, cls, predicate);
-		try {
-			return Optional.ofNullable(invoke(method, patchable));
-		} catch (PatcherException ignored) {}
-		return getField(name, cls, predicate).flatMap((f) -> getFieldValue(f, patchable));
+		Optional<Method> method = getMethod(GET, name, cls, predicate).filter(withoutAnnotation(BlackListed.class));
+		if (method.isPresent()) {
+			return Optional.ofNullable(invoke(method.get(), patchable));
+		}
+		return getField(name, cls, predicate).flatMap(field -> field.get(patchable));
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T extends Annotation> Predicate<AccessibleObject> withAnnotation(@NotNull Class<T> annotationClass) {
 		return withAnnotation(annotationClass, x -> true);
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T extends Annotation> Predicate<AccessibleObject> withoutAnnotation(@NotNull Class<T> annotationClass) {
 		return withAnnotation(annotationClass).negate();
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T extends Annotation> Predicate<AccessibleObject> withAnnotation(@NotNull Class<T> annotationClass, @NotNull Predicate<T> annotationPredicate) {
 		return accessibleObject -> getAnnotation(accessibleObject, annotationClass).filter(annotationPredicate).map(x -> true).orElse(false);
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T extends Annotation> Predicate<AccessibleObject> withoutAnnotation(@NotNull Class<T> annotationClass, @NotNull Predicate<T> annotationPredicate) {
 		return withAnnotation(annotationClass, annotationPredicate).negate();
 	}
 
-	@Loggable(LOGLEVEL)
-	private static void setFieldValue(@NotNull Field field, @NotNull Object o, Object value) {
-		boolean accessible = field.isAccessible();
-		field.setAccessible(true);
-		try {
-			field.set(o, value);
-		} catch (IllegalAccessException e) {
-			throw new PatcherException("Unable to set value to field " + field.getName(), e);
-		} finally {
-			field.setAccessible(accessible);
-		}
-	}
-
-	@Loggable(LOGLEVEL)
-	private static Optional<Object> getFieldValue(@NotNull Field field, @NotNull Object o) {
-		try {
-			return Optional.ofNullable(field.get(o));
-		} catch (IllegalAccessException e) {
-			return Optional.empty();
-		}
-	}
-
-	@Loggable(LOGLEVEL)
 	protected static Object invoke(@NotNull Optional<Method> method, @NotNull Object invokable, Object ...args) throws PatcherException {
 		Optional<Method> invokingMethod = method.filter(withoutAnnotation(BlackListed.class));
 		if (invokingMethod.isPresent()) {
@@ -109,7 +111,6 @@ public class ObjectPatcher {
 		}
 	}
 
-	@Loggable(LOGLEVEL)
 	protected static Object invoke(@NotNull Method method, @NotNull Object invokable, Object ...args) throws PatcherException {
 		try {
 			return method.invoke(invokable,args);
@@ -119,41 +120,34 @@ public class ObjectPatcher {
 	}
 
 
-	@Loggable(LOGLEVEL)
+	/**
+	 * The setter or getter, depending on the prefix, of the json property in the {@link ClassMetadata} index of the class.
+	 */
 	protected static Optional<Method> getMethod(@NotNull String prefix, @NotNull String name, @NotNull Class<?> cls, Predicate<AccessibleObject> predicate) {
-		return Arrays.stream(cls.getDeclaredMethods())
-			       .filter(predicate)
-			       .filter(method -> method.getName().startsWith(prefix))
-			       .findFirst();
+		Optional<PropertyMetadata> property = ClassMetadata.of(cls).getProperty(name);
+		return (SET.equals(prefix) ? property.flatMap(PropertyMetadata::getSetter) : property.flatMap(PropertyMetadata::getGetter))
+			       .filter(predicate);
 	}
-	@Loggable(LOGLEVEL)
 	public static <T extends Annotation> Optional<T> getAnnotation(@NotNull AccessibleObject accessibleObject, @NotNull Class<T> annotationClass) {
 		return Optional.ofNullable(accessibleObject.getAnnotation(annotationClass));
 	}
 
-	@Loggable(LOGLEVEL)
-	@NotNull private static Optional<Field> getField(@NotNull String name, @NotNull Class<?> cls) {
-		return getField(name, cls, withAnnotation(JsonProperty.class, jsonProperty -> jsonProperty.value().equals(name)));
-	}
-
-	@Loggable(LOGLEVEL)
-	@NotNull private static Optional<Field> getField(@NotNull String name, @NotNull Class<?> cls, Predicate<AccessibleObject> fieldAnnotationPredicate) {
-		Optional<Field> optionalField;
-		try {
-			optionalField = Optional.of(cls.getField(name));
-		} catch (NoSuchFieldException e) {
-			optionalField = Optional.empty();
-		}
-		Optional<Field> annotatedField = Arrays.stream(cls.getDeclaredFields()).filter(fieldAnnotationPredicate).findFirst();
-		return annotatedField.isPresent() ? annotatedField : optionalField;
+	/**
+	 * The json property in the {@link ClassMetadata} index of the class reduced to its field, accessed through its
+	 * cached accessor, an annotated field has to pass the predicate.
+	 */
+	@NotNull private static Optional<PropertyMetadata> getField(@NotNull String name, @NotNull Class<?> cls, Predicate<AccessibleObject> fieldAnnotationPredicate) {
+		return ClassMetadata.of(cls).getProperty(name)
+			       .flatMap(PropertyMetadata::getFieldProperty)
+			       .filter(property -> property.getField()
+				                           .filter(field -> !field.isAnnotationPresent(JsonProperty.class) || fieldAnnotationPredicate.test(field))
+				                           .isPresent());
 	}
 
-	@Loggable(LOGLEVEL)
 	@NotNull public static <R> Stream<R> stream(Iterator<R> iterator) {
 		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, 0), false);
 	}
 
-	@Loggable(LOGLEVEL)
 	@NotNull protected static boolean isContainer(Object o) {
 		if (o != null) {
 			Class<?> cls = o.getClass();
@@ -0,0 +1,161 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Optional;
+
+/**
+ * Applies RFC 6902 json patch operations, {@code add}, {@code remove}, {@code replace}, {@code move},
+ * {@code copy} and {@code test}, directly to an object graph.
+ *
+ * Paths are {@link JsonPath json pointers} into the properties of the objects and into the maps, lists and
+ * other collections they hold, which are edited in place. Values are converted to the declared generic type
+ * of the location. The operations are applied in order and atomically, as RFC 6902 requires: a failing operation
+ * throws a {@link PatcherException} after the edits of the operations before it have been undone, in reverse order.
+ * A property without a getter or field to read it from can not be restored.
+ */
+public class OperationPatcherJson extends JsonObjectPatcher {
+	private static final Comparator<JsonNode> NUMERIC = OperationPatcherJson::compare;
+
+	public static <T> Optional<T> PATCH(@NotNull String json, T patchable) throws PatcherException {
+		try {
+			return PATCH(readTree(createParser(json)), patchable);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+		}
+	}
+
+	public static <T> Optional<T> PATCH(@NotNull JsonNode operations, T patchable) throws PatcherException {
+		if (patchable == null) {
+			return Optional.empty();
+		}
+		if (!operations.isArray()) {
+			throw new PatcherException("A json patch has to be an array of operations");
+		}
+		Deque<ObjectLocation.Undo> undos = new ArrayDeque<>();
+		try {
+			for (JsonNode operation : operations) {
+				APPLY(operation, patchable, undos);
+			}
+		} catch (RuntimeException e) {
+			UNDO(undos, e);
+			throw e;
+		}
+		return Optional.of(patchable);
+	}
+
+	/**
+	 * Apply a single operation, atomically.
+	 */
+	public static void APPLY(@NotNull JsonNode operation, @NotNull Object patchable) throws PatcherException {
+		Deque<ObjectLocation.Undo> undos = new ArrayDeque<>();
+		try {
+			APPLY(operation, patchable, undos);
+		} catch (RuntimeException e) {
+			UNDO(undos, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Revert the applied edits, last first, a failing undo is suppressed by the failure of the operation.
+	 */
+	private static void UNDO(Deque<ObjectLocation.Undo> undos, RuntimeException failure) {
+		while (!undos.isEmpty()) {
+			try {
+				undos.pop().undo();
+			} catch (RuntimeException e) {
+				failure.addSuppressed(e);
+			}
+		}
+	}
+
+	private static void APPLY(JsonNode operation, Object patchable, Deque<ObjectLocation.Undo> undos) throws PatcherException {
+		String op = text(operation, "op");
+		JsonPath path = JsonPath.of(text(operation, "path"));
+		switch (op) {
+			case "add": {
+				ObjectLocation location = ObjectLocation.of(patchable, path);
+				undos.push(location.add(convertValue(value(operation), location.getType())));
+				break;
+			}
+			case "remove":
+				undos.push(ObjectLocation.of(patchable, path).remove());
+				break;
+			case "replace": {
+				ObjectLocation location = ObjectLocation.of(patchable, path);
+				undos.push(location.replace(convertValue(value(operation), location.getType())));
+				break;
+			}
+			case "move": {
+				JsonPath from = JsonPath.of(text(operation, "from"));
+				if (from.isAncestorOf(path)) {
+					throw new PatcherException("Unable to move " + from + " into itself");
+				}
+				if (!from.equals(path)) {
+					ObjectLocation source = ObjectLocation.of(patchable, from);
+					Object value = source.get().orElse(null);
+					undos.push(source.remove());
+					undos.push(ObjectLocation.of(patchable, path).add(value));
+				}
+				break;
+			}
+			case "copy": {
+				ObjectLocation source = ObjectLocation.of(patchable, JsonPath.of(text(operation, "from")));
+				ObjectLocation location = ObjectLocation.of(patchable, path);
+				undos.push(location.add(convertValue(toTree(source.get().orElse(null)), location.getType())));
+				break;
+			}
+			case "test": {
+				JsonNode actual = toTree(path.isRoot() ? patchable : ObjectLocation.of(patchable, path).get().orElse(null));
+				if (!actual.equals(NUMERIC, value(operation))) {
+					throw new PatcherException("Test failed, " + path + " is not " + value(operation));
+				}
+				break;
+			}
+			default:
+				throw new PatcherException("Unknown json patch operation: " + op);
+		}
+	}
+
+	/**
+	 * Compares numbers by their value, not by the type of node they were parsed or serialized into, as RFC 6902
+	 * requires. A float is compared as a float, so it equals the json number it was parsed from.
+	 */
+	private static int compare(JsonNode node, JsonNode other) {
+		if (!node.isNumber() || !other.isNumber()) {
+			return node.equals(other) ? 0 : 1;
+		}
+		if (node.numberType() == JsonParser.NumberType.FLOAT || other.numberType() == JsonParser.NumberType.FLOAT) {
+			return Float.compare(node.floatValue(), other.floatValue());
+		}
+		return node.decimalValue().compareTo(other.decimalValue());
+	}
+
+	private static JsonNode toTree(Object value) {
+		return value == null ? NullNode.getInstance() : objectMapper.valueToTree(value);
+	}
+
+	private static String text(JsonNode operation, String member) throws PatcherException {
+		JsonNode value = operation.get(member);
+		if (value == null || !value.isTextual()) {
+			throw new PatcherException("Json patch operation is missing \"" + member + "\": " + operation);
+		}
+		return value.textValue();
+	}
+
+	private static JsonNode value(JsonNode operation) throws PatcherException {
+		JsonNode value = operation.get("value");
+		if (value == null) {
+			throw new PatcherException("Json patch operation is missing \"value\": " + operation);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,137 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Applies one parsed patch to a batch of independent objects in parallel.
+ *
+ * Batches no larger than the threshold are patched sequentially in the calling thread. Larger batches are
+ * split recursively when the executor is a {@link ForkJoinPool}, any other {@link Executor}, such as a
+ * virtual thread per task executor, gets one task per threshold sized chunk. Failures are collected per
+ * object in the {@link BatchPatchResult} instead of aborting the batch.
+ */
+public class ParallelPatcherJson extends JsonObjectPatcher {
+	public static final String THRESHOLD_PROPERTY = "objectpatcher.parallel.threshold";
+	public static final int DEFAULT_THRESHOLD = Integer.getInteger(THRESHOLD_PROPERTY, 1024);
+
+	public static <T> BatchPatchResult<T> PATCH_ALL(String json, Collection<T> patchables) throws PatcherException {
+		return PATCH_ALL(json, patchables, s -> true);
+	}
+
+	public static <T> BatchPatchResult<T> PATCH_ALL(String json, Collection<T> patchables, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		try {
+			return PATCH_ALL(readTree(createParser(json)), patchables, predicate);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+		}
+	}
+
+	public static <T> BatchPatchResult<T> PATCH_ALL(JsonNode tree, Collection<T> patchables, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		return PATCH_ALL(tree, patchables, predicate, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	public static <T> BatchPatchResult<T> PATCH_ALL(JsonNode tree, Collection<T> patchables, Predicate<Map.Entry<String, JsonNode>> predicate, @NotNull Executor executor, int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+		}
+		Batch<T> batch = new Batch<>(tree, toList(patchables), predicate);
+		int size = batch.patchables.size();
+		if (size <= threshold) {
+			batch.patch(0, size);
+		} else if (executor instanceof ForkJoinPool) {
+			((ForkJoinPool) executor).invoke(new BatchTask<>(batch, 0, size, threshold));
+		} else {
+			List<CompletableFuture<Void>> chunks = new ArrayList<>(size / threshold + 1);
+			for (int from = 0; from < size; from += threshold) {
+				int start = from;
+				int end = Math.min(size, from + threshold);
+				chunks.add(CompletableFuture.runAsync(() -> batch.patch(start, end), executor));
+			}
+			CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+		}
+		return batch.result();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> toList(Collection<T> patchables) {
+		if (patchables instanceof List && patchables instanceof RandomAccess) {
+			return (List<T>) patchables;
+		}
+		return new ArrayList<>(patchables);
+	}
+
+	private static final class Batch<T> {
+		private final JsonNode tree;
+		private final List<T> patchables;
+		private final Predicate<Map.Entry<String, JsonNode>> predicate;
+		private final AtomicInteger patched = new AtomicInteger();
+		private final ConcurrentLinkedQueue<BatchPatchResult.Failure<T>> failures = new ConcurrentLinkedQueue<>();
+
+		private Batch(JsonNode tree, List<T> patchables, Predicate<Map.Entry<String, JsonNode>> predicate) {
+			this.tree = tree;
+			this.patchables = patchables;
+			this.predicate = predicate;
+		}
+
+		private void patch(int from, int to) {
+			int succeeded = 0;
+			for (int i = from; i < to; i++) {
+				T patchable = patchables.get(i);
+				try {
+					RecursivePatcherJson.PATCH(tree, patchable, predicate);
+					succeeded++;
+				} catch (PatcherException e) {
+					failures.add(new BatchPatchResult.Failure<>(patchable, e));
+				} catch (RuntimeException e) {
+					failures.add(new BatchPatchResult.Failure<>(patchable, new PatcherException(e)));
+				}
+			}
+			patched.addAndGet(succeeded);
+		}
+
+		private BatchPatchResult<T> result() {
+			return new BatchPatchResult<>(patched.get(), new ArrayList<>(failures));
+		}
+	}
+
+	private static final class BatchTask<T> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Batch<T> batch;
+		private final int from;
+		private final int to;
+		private final int threshold;
+
+		private BatchTask(Batch<T> batch, int from, int to, int threshold) {
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				batch.patch(from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new BatchTask<>(batch, from, middle, threshold), new BatchTask<>(batch, middle, to, threshold));
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Splitter;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A compiled filter of the fields of a patch by their path, e.g. {@code sub.strong}.
+ *
+ * The allow and deny rules are compiled into a trie with a node per path, each node knows whether the field is
+ * allowed and whether its whole sub tree is denied, so a patcher following the field names down the trie with
+ * {@link #field(String)} decides in one map lookup per field and skips denied sub trees without reading them.
+ * A rule applies to the field and everything below it unless a longer path overrides it. Paths without a rule
+ * are allowed, unless there are allow rules, in which case only what they allow is patched.
+ */
+public final class PatchFilter {
+	public static final PatchFilter ALL = new PatchFilter(true, false);
+	public static final PatchFilter NONE = new PatchFilter(false, true);
+
+	private static final Splitter PATH = Splitter.on('.');
+
+	private final boolean allowed;
+	private final boolean pruned;
+	private final Map<String, PatchFilter> children;
+	private final Predicate<String> names;
+
+	private PatchFilter(boolean allowed, boolean pruned) {
+		this.allowed = allowed;
+		this.pruned = pruned;
+		this.children = Collections.emptyMap();
+		this.names = null;
+	}
+
+	private PatchFilter(boolean allowed, Map<String, PatchFilter> children) {
+		this.allowed = allowed;
+		this.pruned = !allowed && children.values().stream().allMatch(PatchFilter::isPruned);
+		this.children = children;
+		this.names = null;
+	}
+
+	private PatchFilter(Predicate<String> names) {
+		this.allowed = true;
+		this.pruned = false;
+		this.children = Collections.emptyMap();
+		this.names = names;
+	}
+
+	@NotNull public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * A filter that tests the names of the fields at every depth with the predicate, as the patchers always did.
+	 */
+	@NotNull public static PatchFilter of(@NotNull Predicate<String> names) {
+		return new PatchFilter(names);
+	}
+
+	/**
+	 * The filter of the named field below this one.
+	 */
+	@NotNull public PatchFilter field(@NotNull String name) {
+		if (names != null) {
+			return names.test(name) ? this : NONE;
+		}
+		PatchFilter child = children.get(name);
+		if (child != null) {
+			return child;
+		}
+		return allowed ? ALL : NONE;
+	}
+
+	/**
+	 * Whether the value of this field may be written.
+	 */
+	public boolean isAllowed() {
+		return allowed;
+	}
+
+	/**
+	 * Whether nothing at or below this field may be written, so the field can be skipped unread.
+	 */
+	public boolean isPruned() {
+		return pruned;
+	}
+
+	/**
+	 * Whether the field below this one with the value may be patched, a container value if anything below it may.
+	 */
+	public boolean accepts(@NotNull String name, @NotNull JsonNode value) {
+		PatchFilter field = field(name);
+		return value.isObject() ? !field.isPruned() : field.isAllowed();
+	}
+
+	public static final class Builder {
+		private final Rule root = new Rule();
+		private boolean allows;
+
+		private Builder() {
+		}
+
+		/**
+		 * Allow the field at the dot separated path and everything below it.
+		 */
+		public Builder allow(@NotNull String path) {
+			rule(path).allowed = true;
+			allows = true;
+			return this;
+		}
+
+		/**
+		 * Deny the field at the dot separated path and everything below it.
+		 */
+		public Builder deny(@NotNull String path) {
+			rule(path).allowed = false;
+			return this;
+		}
+
+		@NotNull public PatchFilter build() {
+			return compile(root, !allows);
+		}
+
+		private Rule rule(String path) {
+			if (path.isEmpty()) {
+				throw new IllegalArgumentException("Path must not be empty");
+			}
+			Rule rule = root;
+			for (String name : PATH.split(path)) {
+				rule = rule.children.computeIfAbsent(name, n -> new Rule());
+			}
+			return rule;
+		}
+
+		private static PatchFilter compile(Rule rule, boolean inherited) {
+			boolean allowed = rule.allowed == null ? inherited : rule.allowed;
+			if (rule.children.isEmpty()) {
+				return allowed ? ALL : NONE;
+			}
+			Map<String, PatchFilter> children = new HashMap<>();
+			rule.children.forEach((name, child) -> children.put(name, compile(child, allowed)));
+			return new PatchFilter(allowed, children);
+		}
+	}
+
+	private static final class Rule {
+		private Boolean allowed;
+		private final Map<String, Rule> children = new LinkedHashMap<>();
+	}
+}
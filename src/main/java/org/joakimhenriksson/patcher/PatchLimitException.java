@@ -0,0 +1,14 @@
+package org.joakimhenriksson.patcher;
+
+/**
+ * Thrown when a patch exceeds one of its {@link PatchLimits}.
+ *
+ * The exception is expected under hostile input, so it is created without a stack trace or suppressed exceptions.
+ */
+public class PatchLimitException extends PatcherException {
+	private static final long serialVersionUID = 1L;
+
+	public PatchLimitException(String message) {
+		super(message, null, false, false);
+	}
+}
@@ -0,0 +1,201 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.ToString;
+
+import javax.validation.constraints.NotNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Limits of a single patch, checked while it is applied so a hostile patch is aborted early.
+ *
+ * The depth is the number of nested objects, or arrays in a json source, below the patched object. The property
+ * count is the number of fields of the patch at any depth and the payload size is the length of the json source in
+ * characters or bytes. A json source is checked token by token before it is read into a tree, a tree is checked
+ * level by level before it is patched, so a patch exceeding a limit is rejected before anything is written.
+ * Instances are created with {@link #builder()}.
+ */
+@ToString
+public final class PatchLimits {
+	public static final int DEFAULT_MAX_DEPTH = 64;
+	public static final int DEFAULT_MAX_PROPERTIES = 100_000;
+	public static final long DEFAULT_MAX_PAYLOAD_SIZE = 16L * 1024 * 1024;
+	public static final PatchLimits DEFAULT = builder().build();
+
+	private final int maxDepth;
+	private final int maxProperties;
+	private final long maxPayloadSize;
+
+	private PatchLimits(Builder builder) {
+		this.maxDepth = builder.maxDepth;
+		this.maxProperties = builder.maxProperties;
+		this.maxPayloadSize = builder.maxPayloadSize;
+	}
+
+	@NotNull public static Builder builder() {
+		return new Builder();
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public int getMaxProperties() {
+		return maxProperties;
+	}
+
+	public long getMaxPayloadSize() {
+		return maxPayloadSize;
+	}
+
+	void checkDepth(int depth) throws PatchLimitException {
+		if (depth >= maxDepth) {
+			throw new PatchLimitException("Patch is nested deeper than " + maxDepth + " objects");
+		}
+	}
+
+	void checkProperties(int properties) throws PatchLimitException {
+		if (properties > maxProperties) {
+			throw new PatchLimitException("Patch has more than " + maxProperties + " properties");
+		}
+	}
+
+	/**
+	 * Check the depth and property count of the tree level by level, without recursing.
+	 */
+	void checkTree(@NotNull JsonNode tree) throws PatchLimitException {
+		List<JsonNode> level = Collections.singletonList(tree);
+		int properties = 0;
+		for (int depth = 0; !level.isEmpty(); depth++) {
+			List<JsonNode> next = new ArrayList<>();
+			for (JsonNode node : level) {
+				if (node.isContainerNode()) {
+					checkDepth(depth);
+					if (node.isObject()) {
+						properties += node.size();
+						checkProperties(properties);
+					}
+					node.forEach(next::add);
+				}
+			}
+			level = next;
+		}
+	}
+
+	/**
+	 * Check the depth and property count of the json token by token, before it is read into a tree. The tokens are
+	 * copied to the generator if one is given, so the tree can be read from it without parsing the json again.
+	 */
+	void checkTokens(@NotNull JsonParser parser, JsonGenerator copy) throws IOException {
+		int depth = -1;
+		int properties = 0;
+		JsonToken token;
+		while ((token = parser.nextToken()) != null) {
+			if (token.isStructStart()) {
+				checkDepth(++depth);
+			} else if (token.isStructEnd()) {
+				depth--;
+			} else if (token == JsonToken.FIELD_NAME) {
+				checkProperties(++properties);
+			}
+			if (copy != null) {
+				copy.copyCurrentEvent(parser);
+			}
+		}
+	}
+
+	void checkPayloadSize(long size) throws PatchLimitException {
+		if (size > maxPayloadSize) {
+			throw new PatchLimitException("Patch of " + size + " is larger than " + maxPayloadSize);
+		}
+	}
+
+	/**
+	 * The stream, throwing a {@link PatchLimitException} as soon as more than the payload size is read from it.
+	 */
+	@NotNull InputStream limit(@NotNull InputStream in) {
+		return new FilterInputStream(in) {
+			private long size;
+
+			@Override
+			public int read() throws IOException {
+				int read = super.read();
+				if (read >= 0) {
+					count(1);
+				}
+				return read;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+				if (read > 0) {
+					count(read);
+				}
+				return read;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long skipped = super.skip(n);
+				count(skipped);
+				return skipped;
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+
+			private void count(long read) {
+				size += read;
+				checkPayloadSize(size);
+			}
+		};
+	}
+
+	public static final class Builder {
+		private int maxDepth = DEFAULT_MAX_DEPTH;
+		private int maxProperties = DEFAULT_MAX_PROPERTIES;
+		private long maxPayloadSize = DEFAULT_MAX_PAYLOAD_SIZE;
+
+		private Builder() {
+		}
+
+		public Builder maxDepth(int maxDepth) {
+			if (maxDepth < 1) {
+				throw new IllegalArgumentException("Max depth must be positive: " + maxDepth);
+			}
+			this.maxDepth = maxDepth;
+			return this;
+		}
+
+		public Builder maxProperties(int maxProperties) {
+			if (maxProperties < 0) {
+				throw new IllegalArgumentException("Max properties must not be negative: " + maxProperties);
+			}
+			this.maxProperties = maxProperties;
+			return this;
+		}
+
+		public Builder maxPayloadSize(long maxPayloadSize) {
+			if (maxPayloadSize < 0) {
+				throw new IllegalArgumentException("Max payload size must not be negative: " + maxPayloadSize);
+			}
+			this.maxPayloadSize = maxPayloadSize;
+			return this;
+		}
+
+		@NotNull public PatchLimits build() {
+			return new PatchLimits(this);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package org.joakimhenriksson.patcher;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives measurements from the patch pipeline, for every patch applied and for the stages around it.
+ *
+ * A {@link JsonNodePatcher} reports to the metrics it is built with. The static patchers report to
+ * {@link PatchTracer#METRICS} when tracing is enabled, which includes the implementations registered as a
+ * {@link java.util.ServiceLoader service}. Implementations are called on the patching thread and should not block.
+ */
+public interface PatchMetrics {
+	PatchMetrics NONE = (type, properties, nanos) -> {};
+
+	/**
+	 * A patch was applied, reported once per patch and not for the sub objects it patched.
+	 *
+	 * @param type the class of the patched object
+	 * @param properties the number of properties written to the object and its sub objects
+	 * @param nanos the time spent patching the object, including its sub objects
+	 */
+	void patched(@NotNull Class<?> type, int properties, long nanos);
+
+	/**
+	 * A patch was parsed into a tree.
+	 */
+	default void parsed(long nanos) {
+	}
+
+	/**
+	 * The {@link ClassMetadata} of the type was requested, whether cached or not.
+	 */
+	default void metadataRequested(@NotNull Class<?> type) {
+	}
+
+	/**
+	 * The {@link ClassMetadata} of the type was not cached and had to be resolved.
+	 */
+	default void metadataResolved(@NotNull Class<?> type, long nanos) {
+	}
+
+	/**
+	 * A field of the patch was rejected by the predicate of the patch.
+	 */
+	default void skipped(@NotNull Class<?> type, @NotNull String name) {
+	}
+
+	/**
+	 * A field of the patch names a {@link BlackListed} property.
+	 */
+	default void blackListed(@NotNull Class<?> type, @NotNull String name) {
+	}
+
+	/**
+	 * Metrics that report to all of the given metrics, in order.
+	 */
+	@NotNull static PatchMetrics all(@NotNull List<? extends PatchMetrics> metrics) {
+		List<PatchMetrics> all = new ArrayList<>(metrics);
+		if (all.size() == 1) {
+			return all.get(0);
+		}
+		return new PatchMetrics() {
+			@Override
+			public void patched(@NotNull Class<?> type, int properties, long nanos) {
+				all.forEach(metrics -> metrics.patched(type, properties, nanos));
+			}
+
+			@Override
+			public void parsed(long nanos) {
+				all.forEach(metrics -> metrics.parsed(nanos));
+			}
+
+			@Override
+			public void metadataRequested(@NotNull Class<?> type) {
+				all.forEach(metrics -> metrics.metadataRequested(type));
+			}
+
+			@Override
+			public void metadataResolved(@NotNull Class<?> type, long nanos) {
+				all.forEach(metrics -> metrics.metadataResolved(type, nanos));
+			}
+
+			@Override
+			public void skipped(@NotNull Class<?> type, @NotNull String name) {
+				all.forEach(metrics -> metrics.skipped(type, name));
+			}
+
+			@Override
+			public void blackListed(@NotNull Class<?> type, @NotNull String name) {
+				all.forEach(metrics -> metrics.blackListed(type, name));
+			}
+		};
+	}
+}
@@ -0,0 +1,171 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import javax.validation.constraints.NotNull;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * A patch compiled for one shape, i.e. a target class, the ordered field names of a patch and a filter.
+ *
+ * Compiling evaluates the filter, resolves the properties and picks a value writer for each field once,
+ * applying the plan is then a single loop over the values of the patch. Plans are kept per class in a
+ * {@link ClassValue}, so they are released with the class, in a table of {@value #CACHE_SIZE_PROPERTY} slots
+ * indexed by a hash of the field count, the field names and the filter. A lookup allocates nothing but the field
+ * name iterators, the names are only compared with those of the plan found in the slot, and a shape hashing to
+ * an occupied slot replaces its plan.
+ *
+ * The filter is part of the shape by identity and is evaluated at compile time, so it has to decide on the
+ * field name alone and must be a stable instance, e.g. a constant, every new instance compiles new plans.
+ *
+ * Plans do not enforce {@link PatchLimits}, a patch from an untrusted source should be checked first, e.g. by
+ * patching it with the limits through {@link RecursivePatcherJson} instead.
+ */
+public final class PatchPlan {
+	public static final String CACHE_SIZE_PROPERTY = "objectpatcher.plan.cacheSize";
+	private static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final int CACHE_SIZE = Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE);
+
+	private static final ClassValue<AtomicReferenceArray<PatchPlan>> PLANS = new ClassValue<AtomicReferenceArray<PatchPlan>>() {
+		@Override
+		protected AtomicReferenceArray<PatchPlan> computeValue(Class<?> type) {
+			return new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(CACHE_SIZE - 1, 1)) << 1);
+		}
+	};
+
+	private final Class<?> type;
+	private final int hash;
+	private final String[] names;
+	private final Predicate<Map.Entry<String, JsonNode>> filter;
+	private final Step[] steps;
+
+	private PatchPlan(@NotNull Class<?> type, int hash, @NotNull String[] names, @NotNull Predicate<Map.Entry<String, JsonNode>> filter, @NotNull Step[] steps) {
+		this.type = type;
+		this.hash = hash;
+		this.names = names;
+		this.filter = filter;
+		this.steps = steps;
+	}
+
+	/**
+	 * Patch using the cached plan for the shape of the tree, compiling it on a miss.
+	 */
+	public static <T> Optional<T> PATCH(@NotNull JsonNode tree, T patchable, @NotNull Predicate<Map.Entry<String, JsonNode>> filter) {
+		if (patchable != null && tree.isObject() && !ObjectPatcher.isContainer(patchable)) {
+			of(patchable.getClass(), tree, filter).write(tree, patchable);
+		}
+		return Optional.ofNullable(patchable);
+	}
+
+	/**
+	 * The cached plan for the shape of the tree, compiling it on a miss.
+	 */
+	@NotNull public static PatchPlan of(@NotNull Class<?> type, @NotNull JsonNode shape, @NotNull Predicate<Map.Entry<String, JsonNode>> filter) {
+		AtomicReferenceArray<PatchPlan> plans = PLANS.get(type);
+		int hash = hash(shape, filter);
+		int slot = hash & (plans.length() - 1);
+		PatchPlan plan = plans.get(slot);
+		if (plan == null || plan.hash != hash || plan.filter != filter || !plan.matches(shape)) {
+			plan = compile(type, shape, filter);
+			plans.set(slot, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Compile a plan for the shape without caching it.
+	 */
+	@NotNull public static PatchPlan compile(@NotNull Class<?> type, @NotNull JsonNode shape, @NotNull Predicate<Map.Entry<String, JsonNode>> filter) {
+		ClassMetadata metadata = ClassMetadata.of(type);
+		String[] names = new String[shape.size()];
+		Step[] steps = new Step[shape.size()];
+		Iterator<Map.Entry<String, JsonNode>> fields = shape.fields();
+		for (int i = 0; fields.hasNext(); i++) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			names[i] = field.getKey();
+			if (filter.test(new AbstractMap.SimpleImmutableEntry<>(field.getKey(), field.getValue()))) {
+				steps[i] = metadata.getProperty(field.getKey()).map(property -> new Step(property, filter)).orElse(null);
+			}
+		}
+		return new PatchPlan(type, hash(shape, filter), names, filter, steps);
+	}
+
+	/**
+	 * Apply the plan to a patch of the shape it was compiled for, i.e. with the same field names in the same order.
+	 */
+	public void apply(@NotNull JsonNode tree, @NotNull Object patchable) {
+		if (!type.isInstance(patchable) || !matches(tree)) {
+			throw new PatcherException("Patch does not have the shape of the plan for " + type.getSimpleName());
+		}
+		write(tree, patchable);
+	}
+
+	private void write(JsonNode tree, Object patchable) {
+		Iterator<JsonNode> values = tree.elements();
+		for (Step step : steps) {
+			JsonNode value = values.next();
+			if (step != null) {
+				step.apply(patchable, value);
+			}
+		}
+	}
+
+	/**
+	 * Whether the tree has the field names of the plan in the same order, field names are usually interned by the
+	 * parser so most compare by identity.
+	 */
+	private boolean matches(JsonNode tree) {
+		if (tree.size() != names.length) {
+			return false;
+		}
+		Iterator<String> fieldNames = tree.fieldNames();
+		for (String name : names) {
+			String fieldName = fieldNames.next();
+			if (fieldName != name && !fieldName.equals(name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A hash of the field count, the field names, whose hashes strings cache, and the identity of the filter.
+	 */
+	private static int hash(JsonNode tree, Predicate<Map.Entry<String, JsonNode>> filter) {
+		int hash = 31 * System.identityHashCode(filter) + tree.size();
+		Iterator<String> fieldNames = tree.fieldNames();
+		while (fieldNames.hasNext()) {
+			hash = 31 * hash + fieldNames.next().hashCode();
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static final class Step {
+		private final PropertyMetadata property;
+		private final ValueWriter writer;
+		private final Predicate<Map.Entry<String, JsonNode>> filter;
+
+		private Step(PropertyMetadata property, Predicate<Map.Entry<String, JsonNode>> filter) {
+			this.property = property;
+			this.writer = property.getWriter();
+			this.filter = filter;
+		}
+
+		private void apply(Object patchable, JsonNode value) {
+			if (value.isContainerNode()) {
+				property.get(patchable)
+					.filter(sub -> !RecursivePatcherJson.PATCH_CONTAINER(value, sub, property))
+					.ifPresent(sub -> PATCH(value, sub, filter));
+			} else if (value.isValueNode()) {
+				writer.write(patchable, (ValueNode) value);
+			}
+		}
+	}
+}
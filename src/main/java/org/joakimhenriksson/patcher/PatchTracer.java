@@ -0,0 +1,317 @@
+package org.joakimhenriksson.patcher;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.validation.constraints.NotNull;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated timings of whole patches, replacing per call tracing of the patch internals.
+ *
+ * The static patchers trace to {@link #GLOBAL} only when the system property {@value #TRACE_PROPERTY} is
+ * {@code true} at class initialisation. Every call site is guarded by the constant {@link #ENABLED}, so when
+ * tracing is disabled the JIT removes the tracing code altogether, not even {@link System#nanoTime()} is called.
+ *
+ * When enabled the static patchers report to {@link #METRICS}, which records into {@link #GLOBAL} and passes
+ * the measurements on to every {@link PatchMetrics} registered with the {@link ServiceLoader}. {@link #GLOBAL}
+ * is registered as the MBean {@value #OBJECT_NAME}. Counters are {@link LongAdder}s and timings keep a log2
+ * histogram in an {@link AtomicLongArray}, so recording never takes a lock.
+ */
+public final class PatchTracer implements PatchTracerMXBean {
+	public static final String TRACE_PROPERTY = "objectpatcher.trace";
+	public static final String OBJECT_NAME = "org.joakimhenriksson.patcher:type=PatchTracer";
+	public static final boolean ENABLED = Boolean.getBoolean(TRACE_PROPERTY);
+	public static final PatchTracer GLOBAL = new PatchTracer();
+	public static final PatchMetrics METRICS = ENABLED ? load() : PatchMetrics.NONE;
+
+	private final Timing parse = new Timing();
+	private final Timing resolve = new Timing();
+	private final Timing patch = new Timing();
+	private final Map<Class<?>, Timing> patches = new ConcurrentHashMap<>();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder blackListed = new LongAdder();
+	private final LongAdder metadataRequests = new LongAdder();
+	private volatile long since = System.nanoTime();
+
+	private static PatchMetrics load() {
+		List<PatchMetrics> metrics = new ArrayList<>();
+		metrics.add(GLOBAL.asMetrics());
+		ServiceLoader.load(PatchMetrics.class).forEach(metrics::add);
+		try {
+			GLOBAL.register(OBJECT_NAME);
+		} catch (PatcherException e) {
+			JsonObjectPatcher.LOGGER.debug("Unable to register the patch tracer", e);
+		}
+		return PatchMetrics.all(metrics);
+	}
+
+	private void patched(Class<?> type, int properties, long nanos) {
+		patch.record(nanos);
+		patches.computeIfAbsent(type, t -> new Timing()).record(nanos);
+		written.add(properties);
+	}
+
+	/**
+	 * The tracer as {@link PatchMetrics}, to record the measurements of a {@link JsonNodePatcher}.
+	 */
+	@NotNull public PatchMetrics asMetrics() {
+		return new PatchMetrics() {
+			@Override
+			public void patched(@NotNull Class<?> type, int properties, long nanos) {
+				PatchTracer.this.patched(type, properties, nanos);
+			}
+
+			@Override
+			public void parsed(long nanos) {
+				parse.record(nanos);
+			}
+
+			@Override
+			public void metadataRequested(@NotNull Class<?> type) {
+				metadataRequests.increment();
+			}
+
+			@Override
+			public void metadataResolved(@NotNull Class<?> type, long nanos) {
+				resolve.record(nanos);
+			}
+
+			@Override
+			public void skipped(@NotNull Class<?> type, @NotNull String name) {
+				skipped.increment();
+			}
+
+			@Override
+			public void blackListed(@NotNull Class<?> type, @NotNull String name) {
+				blackListed.increment();
+			}
+		};
+	}
+
+	/**
+	 * Register the tracer with the platform MBean server.
+	 */
+	@NotNull public ObjectName register(@NotNull String name) throws PatcherException {
+		try {
+			ObjectName objectName = new ObjectName(name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			return objectName;
+		} catch (JMException e) {
+			throw new PatcherException("Unable to register the patch tracer as " + name, e);
+		}
+	}
+
+	@NotNull public Timing getParseTiming() {
+		return parse;
+	}
+
+	/**
+	 * The timing of resolving the {@link ClassMetadata} of classes that were not cached.
+	 */
+	@NotNull public Timing getResolveTiming() {
+		return resolve;
+	}
+
+	/**
+	 * The timing of applying patches to objects of any type.
+	 */
+	@NotNull public Timing getPatchTiming() {
+		return patch;
+	}
+
+	/**
+	 * The timings of applying patches, by patched type.
+	 */
+	@NotNull public Map<Class<?>, Timing> getPatchTimings() {
+		return Collections.unmodifiableMap(patches);
+	}
+
+	@Override
+	public long getPatchCount() {
+		return patch.getCount();
+	}
+
+	@Override
+	public double getPatchesPerSecond() {
+		long nanos = System.nanoTime() - since;
+		return nanos <= 0 ? 0 : patch.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+	}
+
+	@Override
+	public long getPatchMeanNanos() {
+		return patch.getMeanNanos();
+	}
+
+	@Override
+	public long getPatchMaxNanos() {
+		return patch.getMaxNanos();
+	}
+
+	@Override
+	public long getPatch99thPercentileNanos() {
+		return patch.getPercentileNanos(0.99);
+	}
+
+	@Override
+	public long getParseCount() {
+		return parse.getCount();
+	}
+
+	@Override
+	public long getParseMeanNanos() {
+		return parse.getMeanNanos();
+	}
+
+	@Override
+	public long getParse99thPercentileNanos() {
+		return parse.getPercentileNanos(0.99);
+	}
+
+	@Override
+	public long getResolveCount() {
+		return resolve.getCount();
+	}
+
+	@Override
+	public long getResolveMeanNanos() {
+		return resolve.getMeanNanos();
+	}
+
+	@Override
+	public long getPropertiesWritten() {
+		return written.sum();
+	}
+
+	@Override
+	public long getPropertiesSkipped() {
+		return skipped.sum();
+	}
+
+	@Override
+	public long getBlackListedRejections() {
+		return blackListed.sum();
+	}
+
+	@Override
+	public long getMetadataRequests() {
+		return metadataRequests.sum();
+	}
+
+	@Override
+	public double getMetadataHitRate() {
+		long requests = metadataRequests.sum();
+		return requests == 0 ? 0 : Math.max(0, requests - resolve.getCount()) / (double) requests;
+	}
+
+	@Override
+	public void reset() {
+		parse.reset();
+		resolve.reset();
+		patch.reset();
+		patches.clear();
+		written.reset();
+		skipped.reset();
+		blackListed.reset();
+		metadataRequests.reset();
+		since = System.nanoTime();
+	}
+
+	@Override
+	public String toString() {
+		return "PatchTracer(parse=" + parse + ", resolve=" + resolve + ", patch=" + patch + ", patches=" + patches
+			+ ", written=" + written + ", skipped=" + skipped + ", blackListed=" + blackListed + ")";
+	}
+
+	/**
+	 * The count, total and maximum of a timing, and a histogram of it in buckets of powers of two nanoseconds.
+	 */
+	public static final class Timing {
+		private static final int BUCKETS = Long.SIZE;
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+		private void record(long nanos) {
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			histogram.incrementAndGet(Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(Math.max(0, nanos))));
+		}
+
+		private void reset() {
+			count.reset();
+			totalNanos.reset();
+			maxNanos.reset();
+			for (int i = 0; i < BUCKETS; i++) {
+				histogram.set(i, 0);
+			}
+		}
+
+		/**
+		 * The number of timings by bucket, bucket {@code i} counts the timings below {@code 2^i} nanoseconds
+		 * that are not counted in a lower bucket.
+		 */
+		@NotNull public long[] getHistogram() {
+			long[] buckets = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets[i] = histogram.get(i);
+			}
+			return buckets;
+		}
+
+		/**
+		 * The upper bound of the histogram bucket of the percentile, e.g. 0.99, capped by the maximum.
+		 */
+		public long getPercentileNanos(double percentile) {
+			long[] buckets = getHistogram();
+			long total = 0;
+			for (long bucket : buckets) {
+				total += bucket;
+			}
+			long rank = (long) Math.ceil(total * percentile);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets[i];
+				if (seen >= rank && seen > 0) {
+					return i == BUCKETS - 1 ? getMaxNanos() : Math.min(getMaxNanos(), (1L << i) - 1);
+				}
+			}
+			return 0;
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		public long getMeanNanos() {
+			long count = getCount();
+			return count == 0 ? 0 : getTotalNanos() / count;
+		}
+
+		@Override
+		public String toString() {
+			return "Timing(count=" + getCount() + ", mean=" + getMeanNanos() + "ns, max=" + getMaxNanos() + "ns)";
+		}
+	}
+}
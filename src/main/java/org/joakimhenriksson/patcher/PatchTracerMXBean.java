@@ -0,0 +1,38 @@
+package org.joakimhenriksson.patcher;
+
+/**
+ * The management interface of a {@link PatchTracer}, times are in nanoseconds.
+ */
+public interface PatchTracerMXBean {
+	long getPatchCount();
+
+	double getPatchesPerSecond();
+
+	long getPatchMeanNanos();
+
+	long getPatchMaxNanos();
+
+	long getPatch99thPercentileNanos();
+
+	long getParseCount();
+
+	long getParseMeanNanos();
+
+	long getParse99thPercentileNanos();
+
+	long getResolveCount();
+
+	long getResolveMeanNanos();
+
+	long getPropertiesWritten();
+
+	long getPropertiesSkipped();
+
+	long getBlackListedRejections();
+
+	long getMetadataRequests();
+
+	double getMetadataHitRate();
+
+	void reset();
+}
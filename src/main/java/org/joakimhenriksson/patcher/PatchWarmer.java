@@ -0,0 +1,297 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Primitives;
+
+import javax.validation.constraints.NotNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves the cost of the first patch of a class to start up.
+ *
+ * {@link #WARM} resolves the {@link ClassMetadata} of the classes, links the accessors and writers of every
+ * property and looks up the generated patchers, in parallel. The resolved property index can be written to a
+ * snapshot with {@link #SNAPSHOT} and read back with {@link #LOAD} on a later start up, which only looks up the
+ * members it names instead of scanning the classes and their annotations. Every class is written with a
+ * fingerprint of its class files, declared members and their annotations over the hierarchy, a class whose
+ * fingerprint no longer matches or whose members can no longer be found is resolved as usual.
+ */
+public final class PatchWarmer {
+	private static final int MAGIC = 0x4F50534E;
+	private static final int VERSION = 2;
+	private static final String CLASS = ".class";
+	private static final Map<String, Class<?>> PRIMITIVES = Primitives.allPrimitiveTypes().stream()
+		                                                        .collect(Collectors.toMap(Class::getName, Function.identity()));
+
+	private PatchWarmer() {
+	}
+
+	/**
+	 * Resolve and link the classes in parallel.
+	 */
+	public static void WARM(@NotNull Collection<Class<?>> classes) {
+		classes.parallelStream().forEach(PatchWarmer::WARM);
+	}
+
+	/**
+	 * Resolve and link the classes annotated {@link Patchable} in the package and its sub packages.
+	 *
+	 * @return the classes found
+	 */
+	@NotNull public static List<Class<?>> WARM(@NotNull String packageName, @NotNull ClassLoader classLoader) throws PatcherException {
+		List<Class<?>> classes = SCAN(packageName, classLoader);
+		WARM(classes);
+		return classes;
+	}
+
+	/**
+	 * The classes annotated {@link Patchable} in the package and its sub packages.
+	 */
+	@NotNull public static List<Class<?>> SCAN(@NotNull String packageName, @NotNull ClassLoader classLoader) throws PatcherException {
+		try {
+			String directory = packageName.replace('.', '/');
+			Set<String> names = new TreeSet<>();
+			for (URL url : Collections.list(classLoader.getResources(directory))) {
+				if ("file".equals(url.getProtocol())) {
+					scanDirectory(Paths.get(URI.create(url.toString())), packageName, names);
+				} else if ("jar".equals(url.getProtocol())) {
+					scanJar(((JarURLConnection) url.openConnection()).getJarFile(), directory, names);
+				}
+			}
+			List<Class<?>> classes = new ArrayList<>();
+			for (String name : names) {
+				load(name, classLoader).filter(cls -> cls.isAnnotationPresent(Patchable.class)).ifPresent(classes::add);
+			}
+			return classes;
+		} catch (IOException | IllegalArgumentException e) {
+			throw new PatcherException("Unable to scan package " + packageName, e);
+		}
+	}
+
+	/**
+	 * Write the resolved property index of the classes to the file.
+	 */
+	public static void SNAPSHOT(@NotNull Collection<Class<?>> classes, @NotNull Path file) throws PatcherException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(classes.size());
+			for (Class<?> cls : classes) {
+				ClassMetadata metadata = ClassMetadata.of(cls);
+				out.writeUTF(cls.getName());
+				out.writeLong(fingerprint(cls));
+				out.writeInt(metadata.getBlackListed().size());
+				for (String name : metadata.getBlackListed()) {
+					out.writeUTF(name);
+				}
+				out.writeInt(metadata.getProperties().size());
+				for (PropertyMetadata property : metadata.getProperties()) {
+					out.writeUTF(property.getName());
+					writeMember(out, property.getSetter().orElse(null));
+					writeMember(out, property.getGetter().orElse(null));
+					writeMember(out, property.getField().orElse(null));
+				}
+			}
+		} catch (IOException e) {
+			throw new PatcherException("Unable to write snapshot " + file, e);
+		}
+	}
+
+	/**
+	 * Read a snapshot and use it for the classes that are not resolved yet.
+	 *
+	 * @return the number of classes seeded from the snapshot
+	 */
+	public static int LOAD(@NotNull Path file, @NotNull ClassLoader classLoader) throws PatcherException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new PatcherException("Not a snapshot of this version: " + file);
+			}
+			int loaded = 0;
+			int classes = in.readInt();
+			for (int i = 0; i < classes; i++) {
+				String name = in.readUTF();
+				long fingerprint = in.readLong();
+				Set<String> blackListed = new HashSet<>();
+				for (int j = in.readInt(); j > 0; j--) {
+					blackListed.add(in.readUTF());
+				}
+				Map<String, PropertyMetadata> properties = new LinkedHashMap<>();
+				boolean complete = true;
+				for (int j = in.readInt(); j > 0; j--) {
+					String property = in.readUTF();
+					Member[] members = new Member[3];
+					for (int k = 0; k < members.length; k++) {
+						try {
+							members[k] = readMember(in, classLoader);
+						} catch (ReflectiveOperationException | LinkageError e) {
+							complete = false;
+						}
+					}
+					if (complete) {
+						properties.put(property, new PropertyMetadata(property, (Method) members[0], (Method) members[1], (Field) members[2]));
+					}
+				}
+				Optional<Class<?>> cls = load(name, classLoader);
+				if (complete && cls.isPresent() && fingerprint(cls.get()) == fingerprint && ClassMetadata.seed(cls.get(), properties, blackListed)) {
+					loaded++;
+				}
+			}
+			return loaded;
+		} catch (IOException e) {
+			throw new PatcherException("Unable to read snapshot " + file, e);
+		}
+	}
+
+	private static void WARM(Class<?> cls) {
+		ClassMetadata.of(cls).getProperties().forEach(PropertyMetadata::getWriter);
+		GeneratedPatchers.of(cls);
+	}
+
+	/**
+	 * A hash of the class file, the declared members and their {@link JsonProperty} and {@link BlackListed}
+	 * annotations of the class and its parents, everything the resolved metadata depends on.
+	 */
+	private static long fingerprint(Class<?> cls) throws IOException {
+		Hasher hasher = Hashing.sha256().newHasher();
+		fingerprint(cls, hasher);
+		return hasher.hash().asLong();
+	}
+
+	private static void fingerprint(Class<?> cls, Hasher hasher) throws IOException {
+		hasher.putUnencodedChars(cls.getName());
+		try (InputStream classFile = cls.getResourceAsStream('/' + cls.getName().replace('.', '/') + CLASS)) {
+			if (classFile != null) {
+				hasher.putBytes(ByteStreams.toByteArray(classFile));
+			}
+		}
+		Set<String> members = new TreeSet<>();
+		for (Field field : cls.getDeclaredFields()) {
+			members.add(member(field.toGenericString(), field));
+		}
+		for (Method method : cls.getDeclaredMethods()) {
+			members.add(member(method.toGenericString(), method));
+		}
+		members.forEach(hasher::putUnencodedChars);
+		if (cls.getSuperclass() != null && cls.getSuperclass() != Object.class) {
+			fingerprint(cls.getSuperclass(), hasher);
+		}
+		for (Class<?> parent : cls.getInterfaces()) {
+			fingerprint(parent, hasher);
+		}
+	}
+
+	private static String member(String signature, AccessibleObject member) {
+		JsonProperty property = member.getAnnotation(JsonProperty.class);
+		BlackListed blackListed = member.getAnnotation(BlackListed.class);
+		return signature
+			+ (property != null ? " @JsonProperty(" + property.value() + ')' : "")
+			+ (blackListed != null ? " @BlackListed(" + blackListed.value() + ')' : "");
+	}
+
+	/**
+	 * A member as its kind, declaring class, name and for methods the parameter types.
+	 */
+	private static void writeMember(DataOutputStream out, Member member) throws IOException {
+		if (member == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeByte(member instanceof Method ? 1 : 2);
+		out.writeUTF(member.getDeclaringClass().getName());
+		out.writeUTF(member.getName());
+		if (member instanceof Method) {
+			Class<?>[] parameters = ((Method) member).getParameterTypes();
+			out.writeByte(parameters.length);
+			for (Class<?> parameter : parameters) {
+				out.writeUTF(parameter.getName());
+			}
+		}
+	}
+
+	/**
+	 * Read a member, the whole member is read from the stream even if it can not be found.
+	 */
+	private static Member readMember(DataInputStream in, ClassLoader classLoader) throws IOException, ReflectiveOperationException {
+		byte kind = in.readByte();
+		if (kind == 0) {
+			return null;
+		}
+		String declaringClass = in.readUTF();
+		String name = in.readUTF();
+		if (kind == 2) {
+			return Class.forName(declaringClass, false, classLoader).getDeclaredField(name);
+		}
+		String[] parameterNames = new String[in.readByte()];
+		for (int i = 0; i < parameterNames.length; i++) {
+			parameterNames[i] = in.readUTF();
+		}
+		Class<?>[] parameters = new Class<?>[parameterNames.length];
+		for (int i = 0; i < parameters.length; i++) {
+			Class<?> primitive = PRIMITIVES.get(parameterNames[i]);
+			parameters[i] = primitive != null ? primitive : Class.forName(parameterNames[i], false, classLoader);
+		}
+		return Class.forName(declaringClass, false, classLoader).getDeclaredMethod(name, parameters);
+	}
+
+	private static void scanDirectory(Path directory, String packageName, Set<String> names) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.map(file -> directory.relativize(file).toString())
+				.filter(file -> file.endsWith(CLASS))
+				.forEach(file -> names.add(packageName + '.' + className(file.replace(File.separatorChar, '/'))));
+		}
+	}
+
+	private static void scanJar(JarFile jar, String directory, Set<String> names) {
+		jar.stream()
+			.map(JarEntry::getName)
+			.filter(entry -> entry.startsWith(directory + '/') && entry.endsWith(CLASS))
+			.forEach(entry -> names.add(className(entry)));
+	}
+
+	private static String className(String file) {
+		return file.substring(0, file.length() - CLASS.length()).replace('/', '.');
+	}
+
+	private static Optional<Class<?>> load(String name, ClassLoader classLoader) {
+		try {
+			return Optional.of(Class.forName(name, false, classLoader));
+		} catch (ClassNotFoundException | LinkageError e) {
+			return Optional.empty();
+		}
+	}
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
+@Patchable
 @ToString
 @EqualsAndHashCode
 public class PatchableSubObject {
@@ -1,6 +1,15 @@
 package org.joakimhenriksson.patcher;
 
+/**
+ * Thrown when a patch cannot be applied.
+ *
+ * Setting the system property {@value #STACKLESS_PROPERTY} to true skips filling in the stack trace, which is most
+ * of the cost of creating an exception, for production systems that expect and handle failing patches.
+ */
 public class PatcherException extends RuntimeException {
+	public static final String STACKLESS_PROPERTY = "objectpatcher.exception.stackless";
+	private static final boolean STACKLESS = Boolean.getBoolean(STACKLESS_PROPERTY);
+
 	/**
 	 * Constructs a new runtime exception with {@code null} as its
 	 * detail message.  The cause is not initialized, and may subsequently be
@@ -73,4 +82,9 @@ public class PatcherException extends RuntimeException {
 	public PatcherException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
 		super(message, cause, enableSuppression, writableStackTrace);
 	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return STACKLESS ? this : super.fillInStackTrace();
+	}
 }
@@ -0,0 +1,48 @@
+package org.joakimhenriksson.patcher;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Reads and writes a single linked property of a target object.
+ *
+ * The primitive setters exist so that a primitive value can reach a primitive property
+ * without being boxed, implementations that cannot do that simply box and delegate to
+ * {@link #set(Object, Object)}.
+ */
+public interface PropertyAccessor {
+	void set(@NotNull Object target, Object value) throws PatcherException;
+
+	Object get(@NotNull Object target) throws PatcherException;
+
+	default void setBoolean(@NotNull Object target, boolean value) throws PatcherException {
+		set(target, value);
+	}
+
+	default void setByte(@NotNull Object target, byte value) throws PatcherException {
+		set(target, value);
+	}
+
+	default void setChar(@NotNull Object target, char value) throws PatcherException {
+		set(target, value);
+	}
+
+	default void setShort(@NotNull Object target, short value) throws PatcherException {
+		set(target, value);
+	}
+
+	default void setInt(@NotNull Object target, int value) throws PatcherException {
+		set(target, value);
+	}
+
+	default void setLong(@NotNull Object target, long value) throws PatcherException {
+		set(target, value);
+	}
+
+	default void setFloat(@NotNull Object target, float value) throws PatcherException {
+		set(target, value);
+	}
+
+	default void setDouble(@NotNull Object target, double value) throws PatcherException {
+		set(target, value);
+	}
+}
@@ -0,0 +1,173 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Optional;
+
+/**
+ * The resolved setter, getter and field of a single json property of a class.
+ * Instances are created once per class by {@link ClassMetadata}, the accessors are linked lazily
+ * and since they are immutable a racing link at worst links the same accessor twice.
+ */
+public final class PropertyMetadata {
+	private final String name;
+	private final Method setter;
+	private final Method getter;
+	private final Field field;
+	private final PropertyAccessor[] accessors = new PropertyAccessor[AccessorBackend.values().length];
+	private final ValueWriter[] writers = new ValueWriter[AccessorBackend.values().length];
+	private final boolean arrayMerge;
+	private JavaType javaType;
+	private PropertyMetadata fieldProperty;
+
+	PropertyMetadata(@NotNull String name, Method setter, Method getter, Field field) {
+		this.name = name;
+		this.setter = accessible(setter);
+		this.getter = accessible(getter);
+		this.field = accessible(field);
+		this.arrayMerge = isArrayMerge(field) || isArrayMerge(setter) || isArrayMerge(getter);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Optional<Method> getSetter() {
+		return Optional.ofNullable(setter);
+	}
+
+	public Optional<Method> getGetter() {
+		return Optional.ofNullable(getter);
+	}
+
+	public Optional<Field> getField() {
+		return Optional.ofNullable(field);
+	}
+
+	public boolean isWritable() {
+		return setter != null || field != null;
+	}
+
+	public boolean isReadable() {
+		return getter != null || field != null;
+	}
+
+	/**
+	 * The type written by the setter, or the field type if there is no setter.
+	 */
+	public Class<?> getType() {
+		if (setter != null) {
+			return setter.getParameterTypes()[0];
+		}
+		return field != null ? field.getType() : getter.getReturnType();
+	}
+
+	/**
+	 * The generic type of {@link #getType()}, e.g. with the element type of a collection, resolved on first use.
+	 */
+	@NotNull public JavaType getJavaType() {
+		JavaType resolved = javaType;
+		if (resolved == null) {
+			Type genericType = setter != null ? setter.getGenericParameterTypes()[0] : field != null ? field.getGenericType() : getter.getGenericReturnType();
+			resolved = TypeFactory.defaultInstance().constructType(genericType);
+			javaType = resolved;
+		}
+		return resolved;
+	}
+
+	/**
+	 * Whether json arrays merge into the collection of the property, see {@link ArrayMerge}.
+	 */
+	public boolean isArrayMerge() {
+		return arrayMerge;
+	}
+
+	/**
+	 * The accessor linked with the {@link AccessorBackend#DEFAULT} backend.
+	 */
+	@NotNull public PropertyAccessor getAccessor() {
+		return getAccessor(AccessorBackend.DEFAULT);
+	}
+
+	/**
+	 * The accessor linked with the given backend, linked on first use.
+	 */
+	@NotNull public PropertyAccessor getAccessor(@NotNull AccessorBackend backend) {
+		PropertyAccessor accessor = accessors[backend.ordinal()];
+		if (accessor == null) {
+			accessor = backend.link(this);
+			accessors[backend.ordinal()] = accessor;
+		}
+		return accessor;
+	}
+
+	/**
+	 * The property reduced to its field, for the writes and reads that have to bypass the setter and getter,
+	 * created on first use so its accessor is linked once.
+	 */
+	@NotNull Optional<PropertyMetadata> getFieldProperty() {
+		if (field == null) {
+			return Optional.empty();
+		}
+		PropertyMetadata property = fieldProperty;
+		if (property == null) {
+			property = setter == null && getter == null ? this : new PropertyMetadata(name, null, null, field);
+			fieldProperty = property;
+		}
+		return Optional.of(property);
+	}
+
+	/**
+	 * The writer of json scalars for the declared type, using the {@link AccessorBackend#DEFAULT} backend.
+	 */
+	@NotNull ValueWriter getWriter() {
+		return getWriter(AccessorBackend.DEFAULT);
+	}
+
+	@NotNull ValueWriter getWriter(@NotNull AccessorBackend backend) {
+		ValueWriter writer = writers[backend.ordinal()];
+		if (writer == null) {
+			writer = ValueWriter.of(this, getAccessor(backend));
+			writers[backend.ordinal()] = writer;
+		}
+		return writer;
+	}
+
+	/**
+	 * Write the value using the setter if there is one, otherwise the field.
+	 */
+	public void set(@NotNull Object target, Object value) throws PatcherException {
+		getAccessor().set(target, value);
+	}
+
+	/**
+	 * Read the value using the getter if there is one, otherwise the field.
+	 */
+	public Optional<Object> get(@NotNull Object target) throws PatcherException {
+		return Optional.ofNullable(getAccessor().get(target));
+	}
+
+	private static boolean isArrayMerge(AccessibleObject member) {
+		return member != null && ObjectPatcher.getAnnotation(member, ArrayMerge.class).map(ArrayMerge::value).orElse(false);
+	}
+
+	private static <T extends AccessibleObject> T accessible(T accessibleObject) {
+		if (accessibleObject != null) {
+			try {
+				accessibleObject.setAccessible(true);
+			} catch (SecurityException ignored) {}
+		}
+		return accessibleObject;
+	}
+
+	@Override
+	public String toString() {
+		return "PropertyMetadata(" + name + ")";
+	}
+}
@@ -1,52 +1,451 @@
 package org.joakimhenriksson.patcher;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
-import com.jcabi.aspects.Loggable;
 
 import java.io.IOException;
-import java.lang.reflect.AccessibleObject;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class RecursivePatcherJson extends JsonObjectPatcher {
+	/**
+	 * Hands the sub objects and unhandled fields of generated patchers back to the static patcher.
+	 */
+	static final GeneratedPatcher.Context CONTEXT = new GeneratedPatcher.Context() {
+		@Override
+		public int patchObject(JsonNode tree, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+			return PATCH_OBJECT(tree, patchable, predicate);
+		}
+
+		@Override
+		public int patchField(String name, JsonNode value, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+			return PATCH_PROPERTY(ClassMetadata.of(patchable.getClass()), name, value, patchable, predicate);
+		}
+
+		@Override
+		public void skipped(Class<?> type, String name) {
+			if (PatchTracer.ENABLED) {
+				PatchTracer.METRICS.skipped(type, name);
+			}
+		}
+
+		@Override
+		public void blackListed(Class<?> type, String name) {
+			if (PatchTracer.ENABLED) {
+				PatchTracer.METRICS.blackListed(type, name);
+			}
+		}
+	};
+
 	public static <T> Optional<T> PATCH(String json, T patchable) throws PatcherException {
 		return PATCH(json, patchable, s -> true);
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T> Optional<T> PATCH(String json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
 		try {
-			JsonNode tree = objectMapper.reader().readTree(json);
+			JsonNode tree = readTree(createParser(json));
 			return PATCH(tree, patchable, predicate);
 		} catch (IOException e) {
 			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
 		}
 	}
 
-	@Loggable(LOGLEVEL)
+	public static <T> Optional<T> PATCH(byte[] json, int offset, int length, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json, offset, length), "json-bytes"), patchable, predicate);
+	}
+
+	public static <T> Optional<T> PATCH(InputStream json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json), "json-stream"), patchable, predicate);
+	}
+
+	public static <T> Optional<T> PATCH(ByteBuffer json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json), "json-buffer"), patchable, predicate);
+	}
+
+	public static <T> Optional<T> PATCH(Path json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json), "json-file: " + json), patchable, predicate);
+	}
+
 	public static <T> Optional<T> PATCH(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
-		Optional<T> result = Optional.ofNullable(patchable);
-		if (tree.isContainerNode() && !tree.isArray() && !ObjectPatcher.isContainer(patchable)) {
+		PATCH_TREE(tree, patchable, predicate);
+		return Optional.ofNullable(patchable);
+	}
+
+	/**
+	 * Patch within the limits, the json is scanned for its depth and property count before it is read.
+	 */
+	public static <T> Optional<T> PATCH(String json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate, PatchLimits limits) throws PatcherException {
+		limits.checkPayloadSize(json.length());
+		try {
+			SCAN(createParser(json), limits);
+			return PATCH_LIMITED(readTree(createParser(json)), patchable, predicate);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string", e);
+		}
+	}
+
+	public static <T> Optional<T> PATCH(byte[] json, int offset, int length, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate, PatchLimits limits) throws PatcherException {
+		limits.checkPayloadSize(length);
+		try {
+			SCAN(createParser(json, offset, length), limits);
+			return PATCH_LIMITED(readTree(createParser(json, offset, length)), patchable, predicate);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-bytes", e);
+		}
+	}
+
+	/**
+	 * Patch within the limits, the tree is checked before anything is patched and the nested objects are then
+	 * iterated with an explicit stack instead of recursing. The fields are patched in the same order as the
+	 * recursive patcher does. The walk follows the patch, which is a finite tree, so it ends on cyclic object
+	 * graphs too and an object reached twice is patched twice. Generated patchers recurse, so the properties are
+	 * always patched through the {@link ClassMetadata}.
+	 *
+	 * @throws PatchLimitException if a limit is exceeded, nothing is patched then
+	 */
+	public static <T> Optional<T> PATCH(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate, PatchLimits limits) throws PatcherException {
+		limits.checkTree(tree);
+		return PATCH_LIMITED(tree, patchable, predicate);
+	}
+
+	private static <T> Optional<T> PATCH_LIMITED(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		Deque<Frame> stack = new ArrayDeque<>();
+		if (Frame.isPatchable(tree, patchable)) {
+			stack.push(new Frame(tree, patchable));
+		}
+		while (!stack.isEmpty()) {
+			Frame frame = stack.peek();
+			if (!frame.fields.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Map.Entry<String, JsonNode> field = frame.fields.next();
+			Optional<PropertyMetadata> property = predicate.test(field) ? frame.metadata.getProperty(field.getKey()) : Optional.empty();
+			if (!property.isPresent()) {
+				continue;
+			}
+			JsonNode value = field.getValue();
+			if (value.isContainerNode()) {
+				Optional<Object> current = property.get().get(frame.patchable);
+				if (current.isPresent() && !PATCH_CONTAINER(value, current.get(), property.get()) && Frame.isPatchable(value, current.get())) {
+					stack.push(new Frame(value, current.get()));
+				}
+			} else if (value.isValueNode()) {
+				property.get().getWriter().write(frame.patchable, (ValueNode) value);
+			}
+		}
+		return Optional.ofNullable(patchable);
+	}
+
+	/**
+	 * Check the depth and property count of the json token by token, closing the parser.
+	 */
+	private static void SCAN(JsonParser parser, PatchLimits limits) throws IOException {
+		try (JsonParser scanning = parser) {
+			limits.checkTokens(scanning, null);
+		}
+	}
+
+	/**
+	 * An object being patched, with the fields of its patch that are left.
+	 */
+	private static final class Frame {
+		private final Object patchable;
+		private final ClassMetadata metadata;
+		private final Iterator<Map.Entry<String, JsonNode>> fields;
+
+		private Frame(JsonNode tree, Object patchable) {
+			this.patchable = patchable;
+			this.metadata = ClassMetadata.of(patchable.getClass());
+			this.fields = tree.fields();
+		}
+
+		private static boolean isPatchable(JsonNode tree, Object patchable) {
+			return patchable != null && tree.isObject() && !ObjectPatcher.isContainer(patchable);
+		}
+	}
+
+	/**
+	 * Patch with the filter followed down the nested objects, a sub tree it denies is not visited.
+	 * Generated patchers take no filter, so the properties are always patched through the {@link ClassMetadata}.
+	 */
+	public static <T> Optional<T> PATCH(JsonNode tree, T patchable, PatchFilter filter) {
+		PATCH_TREE(tree, patchable, filter);
+		return Optional.ofNullable(patchable);
+	}
+
+	static void PATCH_TREE(JsonNode tree, Object patchable, PatchFilter filter) {
+		if (patchable == null || !tree.isObject() || ObjectPatcher.isContainer(patchable)) {
+			return;
+		}
+		ClassMetadata metadata = ClassMetadata.of(patchable.getClass());
+		Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			PatchFilter fieldFilter = filter.field(field.getKey());
+			Optional<PropertyMetadata> property = fieldFilter.isPruned() ? Optional.empty() : metadata.getProperty(field.getKey());
+			if (!property.isPresent()) {
+				continue;
+			}
+			JsonNode value = field.getValue();
+			if (value.isContainerNode()) {
+				Optional<Object> current = property.get().get(patchable);
+				if (current.isPresent() && !(fieldFilter.isAllowed() && PATCH_CONTAINER(value, current.get(), property.get()))) {
+					PATCH_TREE(value, current.get(), fieldFilter);
+				}
+			} else if (value.isValueNode() && fieldFilter.isAllowed()) {
+				property.get().getWriter().write(patchable, (ValueNode) value);
+			}
+		}
+	}
+
+	/**
+	 * Patch creating the null sub objects the patch has an object for with the factory.
+	 * Generated patchers skip null sub objects, so the properties are always patched through the {@link ClassMetadata}.
+	 */
+	public static <T> Optional<T> PATCH(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate, SubObjectFactory factory) {
+		if (factory == SubObjectFactory.NONE) {
+			return PATCH(tree, patchable, predicate);
+		}
+		PATCH_TREE(tree, patchable, predicate, factory);
+		return Optional.ofNullable(patchable);
+	}
+
+	private static void PATCH_TREE(JsonNode tree, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate, SubObjectFactory factory) {
+		if (patchable != null && tree.isObject() && !ObjectPatcher.isContainer(patchable)) {
 			ObjectPatcher.stream(tree.fields())
 				.filter(predicate)
-				.forEach(entry -> PATCH_FIELD(entry.getKey(), entry.getValue(), patchable, predicate));
+				.forEach(entry -> PATCH_FIELD(entry.getKey(), entry.getValue(), patchable, predicate, factory));
 		}
-		return result;
 	}
 
-	@Loggable(LOGLEVEL)
+	private static void PATCH_FIELD(String name, JsonNode tree, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate, SubObjectFactory factory) {
+		Optional<PropertyMetadata> property = ClassMetadata.of(patchable.getClass()).getProperty(name);
+		if (!property.isPresent() || !tree.isContainerNode()) {
+			PATCH_FIELD(name, tree, patchable, predicate);
+			return;
+		}
+		Optional<Object> value = property.get().get(patchable);
+		if (value.isPresent()) {
+			if (!PATCH_CONTAINER(tree, value.get(), property.get())) {
+				PATCH_TREE(tree, value.get(), predicate, factory);
+			}
+		} else if (tree.isObject() && property.get().isWritable()) {
+			Object created = factory.create(property.get().getType());
+			if (created != null) {
+				PATCH_TREE(tree, created, predicate, factory);
+				property.get().set(patchable, created);
+			}
+		}
+	}
+
+	/**
+	 * Patch using the generated patcher of the class if there is one. When tracing, the patch is reported to the
+	 * {@link PatchTracer#METRICS metrics} once, with the properties written to the object and its sub objects.
+	 */
+	static <T> void PATCH_TREE(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		if (PatchTracer.ENABLED && patchable != null) {
+			long start = System.nanoTime();
+			int written = PATCH_OBJECT(tree, patchable, predicate);
+			PatchTracer.METRICS.patched(patchable.getClass(), written, System.nanoTime() - start);
+		} else {
+			PATCH_OBJECT(tree, patchable, predicate);
+		}
+	}
+
+	/**
+	 * @return the number of properties written to the object and its sub objects
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> int PATCH_OBJECT(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		if (patchable == null || !tree.isObject() || ObjectPatcher.isContainer(patchable)) {
+			return 0;
+		}
+		Optional<GeneratedPatcher<T>> generated = GeneratedPatchers.forPatch((Class<T>) patchable.getClass());
+		if (generated.isPresent()) {
+			return generated.get().patchTree(tree, patchable, predicate);
+		}
+		ClassMetadata metadata = ClassMetadata.of(patchable.getClass());
+		int written = 0;
+		Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			if (predicate.test(field)) {
+				written += PATCH_PROPERTY(metadata, field.getKey(), field.getValue(), patchable, predicate);
+			} else if (PatchTracer.ENABLED) {
+				PatchTracer.METRICS.skipped(patchable.getClass(), field.getKey());
+			}
+		}
+		return written;
+	}
+
 	public static <T> void PATCH_FIELD(String name, JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		PATCH_PROPERTY(ClassMetadata.of(patchable.getClass()), name, tree, patchable, predicate);
+	}
+
+	private static int PATCH_PROPERTY(ClassMetadata metadata, String name, JsonNode tree, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		Optional<PropertyMetadata> property = metadata.getProperty(name);
+		if (!property.isPresent()) {
+			if (PatchTracer.ENABLED && metadata.isBlackListed(name)) {
+				PatchTracer.METRICS.blackListed(patchable.getClass(), name);
+			}
+			return 0;
+		}
 		if (tree.isContainerNode()) {
-			Predicate<AccessibleObject> annotationPredicate = ObjectPatcher.withAnnotation(JsonProperty.class, (JsonProperty property) -> property.value().equals(name));
-			ObjectPatcher.getFieldValue(name, patchable, annotationPredicate)
-				.flatMap((value) -> PATCH(tree, value, predicate));
-		} else if (tree.isValueNode()) {
-			Predicate<AccessibleObject> annotationPredicate = ObjectPatcher.withAnnotation(JsonProperty.class, (JsonProperty property) -> property.value().equals(name));
-			getOptionalFieldValue((ValueNode) tree)
-				.ifPresent((value) -> ObjectPatcher.setFieldValue(name, patchable, value, annotationPredicate));
+			Optional<Object> value = property.get().get(patchable);
+			if (!value.isPresent()) {
+				return 0;
+			}
+			return PATCH_CONTAINER(tree, value.get(), property.get()) ? 1 : PATCH_OBJECT(tree, value.get(), predicate);
+		}
+		if (tree.isValueNode()) {
+			property.get().getWriter().write(patchable, (ValueNode) tree);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Patch the map or collection held by the property in place. An object merges into a map key by key, a null
+	 * removing the key. An array replaces the elements of a collection, or is added to them if the property is
+	 * annotated {@link ArrayMerge}. The values are converted to the element type of the property.
+	 *
+	 * @return false if the value is not a container the tree can be patched into
+	 */
+	static boolean PATCH_CONTAINER(JsonNode tree, Object value, PropertyMetadata property) {
+		if (value instanceof Map && tree.isObject()) {
+			MergePatcherJson.MERGE(tree, value, property.getJavaType());
+			return true;
+		}
+		if (value instanceof Collection && tree.isArray()) {
+			@SuppressWarnings("unchecked")
+			Collection<Object> collection = (Collection<Object>) value;
+			if (property.isArrayMerge()) {
+				MergePatcherJson.ADD_ALL(tree, collection, property.getJavaType());
+			} else {
+				MergePatcherJson.REPLACE_ALL(tree, collection, property.getJavaType());
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Parse the patch once and apply it to every patchable.
+	 */
+	public static <T> void PATCH_ALL(String json, Iterable<T> patchables, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		try {
+			PATCH_ALL(readTree(createParser(json)), patchables, predicate);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+		}
+	}
+
+	public static <T> void PATCH_ALL(JsonNode tree, Iterable<T> patchables, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		for (T patchable : patchables) {
+			PATCH(tree, patchable, predicate);
+		}
+	}
+
+	/**
+	 * Parse the patch once and apply it to every patchable of the stream, consuming and closing the stream.
+	 */
+	public static <T> void PATCH_ALL(String json, Stream<T> patchables, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		try (Stream<T> closing = patchables) {
+			JsonNode tree = readTree(createParser(json));
+			closing.forEach(patchable -> PATCH(tree, patchable, predicate));
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+		}
+	}
+
+	/**
+	 * Apply an ordered list of patches to the patchable as one patch, with the same result as applying them in order:
+	 * only the last value written to a property is applied, a null the patcher ignores keeps the earlier value and
+	 * the arrays of {@link ArrayMerge} properties are appended in order.
+	 */
+	public static <T> Optional<T> PATCH_COALESCED(List<String> jsons, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		List<JsonNode> trees = new ArrayList<>(jsons.size());
+		for (String json : jsons) {
+			try {
+				trees.add(readTree(createParser(json)));
+			} catch (IOException e) {
+				throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+			}
+		}
+		return PATCH(patchable == null ? COALESCE(trees) : COALESCE(trees, patchable.getClass()), patchable, predicate);
+	}
+
+	/**
+	 * Merge an ordered list of patches into one, objects are merged recursively, nulls are skipped, as the patcher
+	 * ignores them on properties, and any other value, arrays included, replaces the earlier one. Without the class
+	 * every nested object is taken for a sub object, so nulls removing map keys are skipped too.
+	 * The given trees are not modified.
+	 */
+	public static ObjectNode COALESCE(Iterable<JsonNode> trees) {
+		return COALESCE(trees, null);
+	}
+
+	/**
+	 * Merge an ordered list of patches of the class into one, as {@link #COALESCE(Iterable)} but the arrays of its
+	 * {@link ArrayMerge} properties are concatenated, since patching them one after the other appends each of them,
+	 * and in its maps a null replaces the earlier value, since it removes the key.
+	 */
+	public static ObjectNode COALESCE(Iterable<JsonNode> trees, Class<?> type) {
+		ClassMetadata metadata = metadata(type);
+		ObjectNode coalesced = objectMapper.createObjectNode();
+		for (JsonNode tree : trees) {
+			if (tree.isObject()) {
+				COALESCE(coalesced, tree, metadata, false);
+			}
+		}
+		return coalesced;
+	}
+
+	/**
+	 * @param map whether the tree is merged into a map, whose keys a null removes, rather than into the properties of an object
+	 */
+	private static void COALESCE(ObjectNode coalesced, JsonNode tree, ClassMetadata metadata, boolean map) {
+		Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			JsonNode current = coalesced.get(field.getKey());
+			Optional<PropertyMetadata> property = metadata == null ? Optional.empty() : metadata.getProperty(field.getKey());
+			if (field.getValue().isNull() && !map) {
+				continue;
+			}
+			if (field.getValue().isObject() && current != null && current.isObject()) {
+				Class<?> type = property.map(PropertyMetadata::getType).orElse(null);
+				COALESCE((ObjectNode) current, field.getValue(), metadata(type), map || type != null && Map.class.isAssignableFrom(type));
+			} else if (field.getValue().isArray() && current != null && current.isArray() && property.filter(PropertyMetadata::isArrayMerge).isPresent()) {
+				((ArrayNode) current).addAll((ArrayNode) field.getValue().deepCopy());
+			} else {
+				coalesced.set(field.getKey(), field.getValue().deepCopy());
+			}
+		}
+	}
+
+	/**
+	 * The metadata of a patchable class, null for no class and for maps and collections, which have no properties.
+	 */
+	private static ClassMetadata metadata(Class<?> type) {
+		if (type == null || type.isPrimitive() || Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)) {
+			return null;
 		}
+		return ClassMetadata.of(type);
 	}
 }
@@ -0,0 +1,50 @@
+package org.joakimhenriksson.patcher;
+
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * {@link PropertyAccessor} using plain reflection, the members are expected to already be accessible.
+ */
+final class ReflectionAccessor implements PropertyAccessor {
+	private final String name;
+	private final Method setter;
+	private final Method getter;
+	private final Field field;
+
+	ReflectionAccessor(@NotNull PropertyMetadata property) {
+		this.name = property.getName();
+		this.setter = property.getSetter().orElse(null);
+		this.getter = property.getGetter().orElse(null);
+		this.field = property.getField().orElse(null);
+	}
+
+	@Override
+	public void set(@NotNull Object target, Object value) throws PatcherException {
+		try {
+			if (setter != null) {
+				setter.invoke(target, value);
+			} else if (field != null) {
+				field.set(target, value);
+			}
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new PatcherException("Unable to set value to property " + name, e);
+		}
+	}
+
+	@Override
+	public Object get(@NotNull Object target) throws PatcherException {
+		try {
+			if (getter != null) {
+				return getter.invoke(target);
+			} else if (field != null) {
+				return field.get(target);
+			}
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new PatcherException("Unable to get value from property " + name, e);
+		}
+		return null;
+	}
+}
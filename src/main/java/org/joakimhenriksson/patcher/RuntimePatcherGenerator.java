@@ -0,0 +1,219 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.joakimhenriksson.patcher.codegen.PatcherModel;
+import org.joakimhenriksson.patcher.codegen.PatcherSourceWriter;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Generates a {@link GeneratedPatcher} at runtime for classes that were not annotation processed.
+ *
+ * The source is written by the same {@link PatcherSourceWriter} as the annotation processor uses, from a
+ * {@link PatcherModel} resolved by {@link ClassMetadata}, and compiled in memory with the system java compiler
+ * against the locations the referenced classes were loaded from. The class is defined in the package of the
+ * patched class, as a hidden class on JDK 15 and later and through {@code Lookup.defineClass} on JDK 9 to 14, so
+ * it can reach package private members directly. Generation is not possible on JDK 8, without a compiler, i.e. on
+ * a JRE, or when a referenced class was not loaded from a file, e.g. from a jar nested in a fat jar, in which
+ * case the class stays reflective.
+ */
+final class RuntimePatcherGenerator {
+	private static final JavaCompiler COMPILER = compiler();
+
+	private RuntimePatcherGenerator() {
+	}
+
+	/**
+	 * Whether patchers can be generated at all, i.e. there is a system java compiler.
+	 */
+	static boolean isAvailable() {
+		return COMPILER != null;
+	}
+
+	@NotNull static <T> Optional<GeneratedPatcher<T>> generate(@NotNull Class<T> type) {
+		if (COMPILER == null || type.getCanonicalName() == null || !isAccessible(type) || Modifier.isAbstract(type.getModifiers())) {
+			return Optional.empty();
+		}
+		try {
+			Optional<String> classPath = classPath(type);
+			if (!classPath.isPresent()) {
+				return Optional.empty();
+			}
+			PatcherModel model = model(type);
+			Optional<byte[]> bytes = compile(model, type, classPath.get());
+			if (!bytes.isPresent()) {
+				return Optional.empty();
+			}
+			Class<?> patcher = define(type, bytes.get());
+			GeneratedPatcher<?> generated = (GeneratedPatcher<?>) patcher.getConstructor().newInstance();
+			@SuppressWarnings("unchecked")
+			GeneratedPatcher<T> typed = (GeneratedPatcher<T>) generated;
+			return Optional.of(typed);
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+			JsonObjectPatcher.LOGGER.debug("Unable to generate a patcher for {}", type.getName(), e);
+			return Optional.empty();
+		}
+	}
+
+	static PatcherModel model(Class<?> type) {
+		Package typePackage = type.getPackage();
+		PatcherModel model = new PatcherModel(typePackage == null ? "" : typePackage.getName(), type.getCanonicalName(), type.getName());
+		ClassMetadata metadata = ClassMetadata.of(type);
+		for (PropertyMetadata property : metadata.getProperties()) {
+			Method setter = property.getSetter().filter(member -> isAccessible(member, typePackage)).orElse(null);
+			Field field = property.getField().filter(member -> isAccessible(member, typePackage)).orElse(null);
+			Method getter = property.getGetter().filter(member -> isAccessible(member, typePackage)).orElse(null);
+			Class<?> propertyType = property.getType();
+			boolean fieldWritable = !property.getSetter().isPresent() && field != null && !Modifier.isFinal(field.getModifiers());
+			boolean fieldReadable = !property.getGetter().isPresent() && field != null;
+			model.add(new PatcherModel.Property(property.getName(),
+				propertyType.getCanonicalName(),
+				isObject(propertyType),
+				false,
+				setter == null ? null : setter.getName(),
+				fieldWritable ? field.getName() : null,
+				getter == null ? null : getter.getName(),
+				fieldReadable ? field.getName() : null));
+		}
+		for (String name : metadata.getBlackListed()) {
+			model.add(new PatcherModel.Property(name, null, false, true, null, null, null, null));
+		}
+		return model;
+	}
+
+	/**
+	 * Whether the member can be used from source in the package of the patched class.
+	 */
+	private static boolean isAccessible(Member member, Package typePackage) {
+		if (Modifier.isPrivate(member.getModifiers())) {
+			return false;
+		}
+		return Objects.equals(member.getDeclaringClass().getPackage(), typePackage)
+			|| Modifier.isPublic(member.getModifiers()) && Modifier.isPublic(member.getDeclaringClass().getModifiers());
+	}
+
+	private static boolean isAccessible(Class<?> type) {
+		for (Class<?> cls = type; cls != null; cls = cls.getEnclosingClass()) {
+			if (Modifier.isPrivate(cls.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isObject(Class<?> type) {
+		return !type.isPrimitive() && !type.isArray() && !type.isEnum() && !type.isInterface()
+			&& !PatcherSourceWriter.isScalar(type.getCanonicalName())
+			&& !type.getName().startsWith("java.")
+			&& !Collection.class.isAssignableFrom(type) && !Map.class.isAssignableFrom(type);
+	}
+
+	private static JavaCompiler compiler() {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			JsonObjectPatcher.LOGGER.warn("No system java compiler, e.g. on a JRE, patchers are not generated at runtime and classes are patched reflectively");
+		}
+		return compiler;
+	}
+
+	private static Optional<byte[]> compile(PatcherModel model, Class<?> type, String classPath) {
+		String source = PatcherSourceWriter.write(model);
+		JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("string:///" + model.getPatcherQualifiedName().replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		StandardJavaFileManager standard = COMPILER.getStandardFileManager(null, null, null);
+		ForwardingJavaFileManager<StandardJavaFileManager> fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+				return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+					@Override
+					public OutputStream openOutputStream() {
+						return bytes;
+					}
+				};
+			}
+		};
+		StringWriter diagnostics = new StringWriter();
+		boolean compiled = COMPILER.getTask(diagnostics, fileManager, null,
+			Arrays.asList("-proc:none", "-nowarn", "-classpath", classPath), null, Collections.singletonList(sourceFile)).call();
+		if (!compiled) {
+			JsonObjectPatcher.LOGGER.debug("Unable to compile the patcher for {}: {}", type.getName(), diagnostics);
+			return Optional.empty();
+		}
+		return Optional.of(bytes.toByteArray());
+	}
+
+	/**
+	 * The locations of the classes the patcher source refers to, the patched class and its parents, the types of
+	 * its properties and the patcher base classes, or empty if one of them was not loaded from a file.
+	 */
+	private static Optional<String> classPath(Class<?> type) {
+		Set<Class<?>> classes = new LinkedHashSet<>(Arrays.asList(GeneratedPatcher.class, JsonNode.class, TreeNode.class));
+		for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+			classes.add(cls);
+			classes.addAll(Arrays.asList(cls.getInterfaces()));
+		}
+		for (PropertyMetadata property : ClassMetadata.of(type).getProperties()) {
+			classes.add(property.getType());
+		}
+		Set<String> paths = new LinkedHashSet<>();
+		for (Class<?> cls : classes) {
+			CodeSource codeSource = cls.isPrimitive() || cls.isArray() ? null : cls.getProtectionDomain().getCodeSource();
+			if (codeSource == null || codeSource.getLocation() == null || "jrt".equals(codeSource.getLocation().getProtocol())) {
+				continue;
+			}
+			if (!"file".equals(codeSource.getLocation().getProtocol())) {
+				JsonObjectPatcher.LOGGER.debug("Not generating a patcher for {}, {} was loaded from {}", type.getName(), cls.getName(), codeSource.getLocation());
+				return Optional.empty();
+			}
+			paths.add(new File(URI.create(codeSource.getLocation().toString())).getPath());
+		}
+		return Optional.of(String.join(File.pathSeparator, paths));
+	}
+
+	private static Class<?> define(Class<?> type, byte[] bytes) throws ReflectiveOperationException {
+		Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+		MethodHandles.Lookup lookup = (MethodHandles.Lookup) privateLookupIn.invoke(null, type, MethodHandles.lookup());
+		try {
+			Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			Method defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, Array.newInstance(classOption, 0).getClass());
+			MethodHandles.Lookup hidden = (MethodHandles.Lookup) defineHiddenClass.invoke(lookup, bytes, true, Array.newInstance(classOption, 0));
+			return hidden.lookupClass();
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			Method defineClass = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+			return (Class<?>) defineClass.invoke(lookup, (Object) bytes);
+		}
+	}
+}
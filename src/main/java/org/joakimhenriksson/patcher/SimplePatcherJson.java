@@ -1,12 +1,13 @@
 package org.joakimhenriksson.patcher;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
-import com.jcabi.aspects.Loggable;
 
 import java.io.IOException;
-import java.lang.reflect.AccessibleObject;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
@@ -16,33 +17,82 @@ public class SimplePatcherJson extends JsonObjectPatcher {
 		return PATCH(json, patchable, s -> true);
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T> Optional<T> PATCH(String json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
 		try {
-			JsonNode tree = objectMapper.reader().readTree(json);
+			JsonNode tree = readTree(createParser(json));
 			return PATCH(tree, patchable, predicate);
 		} catch (IOException e) {
 			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
 		}
 	}
 
-	@Loggable(LOGLEVEL)
+	public static <T> Optional<T> PATCH(byte[] json, int offset, int length, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json, offset, length), "json-bytes"), patchable, predicate);
+	}
+
+	public static <T> Optional<T> PATCH(InputStream json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json), "json-stream"), patchable, predicate);
+	}
+
+	public static <T> Optional<T> PATCH(ByteBuffer json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json), "json-buffer"), patchable, predicate);
+	}
+
+	public static <T> Optional<T> PATCH(Path json, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) throws PatcherException {
+		return PATCH(readTree(() -> createParser(json), "json-file: " + json), patchable, predicate);
+	}
+
 	public static <T> Optional<T> PATCH(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
-		Optional<T> result = Optional.ofNullable(patchable);
-		if (tree.isContainerNode() && !tree.isArray() && !ObjectPatcher.isContainer(patchable)) {
+		if (PatchTracer.ENABLED && patchable != null) {
+			PATCH_TRACED(tree, patchable, predicate);
+		} else if (tree.isContainerNode() && !tree.isArray() && !ObjectPatcher.isContainer(patchable)) {
+			ClassMetadata metadata = ClassMetadata.of(patchable.getClass());
 			ObjectPatcher.stream(tree.fields())
 				.filter(predicate)
-				.forEach(entry -> PATCH_FIELD(entry.getKey(), entry.getValue(), patchable));
+				.forEach(entry -> PATCH_FIELD(metadata, entry.getKey(), entry.getValue(), patchable));
+		}
+		return Optional.ofNullable(patchable);
+	}
+
+	private static <T> void PATCH_TRACED(JsonNode tree, T patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+		long start = System.nanoTime();
+		Class<?> type = patchable.getClass();
+		int written = 0;
+		if (tree.isContainerNode() && !tree.isArray() && !ObjectPatcher.isContainer(patchable)) {
+			ClassMetadata metadata = ClassMetadata.of(type);
+			Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				if (!predicate.test(field)) {
+					PatchTracer.METRICS.skipped(type, field.getKey());
+				} else if (metadata.isBlackListed(field.getKey())) {
+					PatchTracer.METRICS.blackListed(type, field.getKey());
+				} else if (PATCH_FIELD(metadata, field.getKey(), field.getValue(), patchable)) {
+					written++;
+				}
+			}
 		}
-		return result;
+		PatchTracer.METRICS.patched(type, written, System.nanoTime() - start);
 	}
 
-	@Loggable(LOGLEVEL)
 	public static <T> void PATCH_FIELD(String name, JsonNode tree, T patchable) {
-		if (tree.isValueNode()) {
-			Predicate<AccessibleObject> annotationPredicate = ObjectPatcher.withAnnotation(JsonProperty.class, (JsonProperty property) -> property.value().equals(name));
-			getOptionalFieldValue((ValueNode) tree)
-				.ifPresent((value) -> ObjectPatcher.setFieldValue(name, patchable, value, annotationPredicate));
+		PATCH_FIELD(ClassMetadata.of(patchable.getClass()), name, tree, patchable);
+	}
+
+	/**
+	 * Write a scalar through the {@link ValueWriter} of the property, so primitives are written without boxing.
+	 *
+	 * @return whether the field is a scalar of a known property
+	 */
+	private static boolean PATCH_FIELD(ClassMetadata metadata, String name, JsonNode tree, Object patchable) {
+		if (!tree.isValueNode()) {
+			return false;
+		}
+		Optional<PropertyMetadata> property = metadata.getProperty(name);
+		if (!property.isPresent()) {
+			return false;
 		}
+		property.get().getWriter().write(patchable, (ValueNode) tree);
+		return true;
 	}
 }
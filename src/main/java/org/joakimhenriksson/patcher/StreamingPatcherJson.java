@@ -0,0 +1,129 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Patches straight from the {@link JsonParser} tokens without building a {@link com.fasterxml.jackson.databind.JsonNode} tree.
+ *
+ * Every field name is resolved against the patched object as it arrives, scalar values are written directly,
+ * objects are patched recursively into the current value of the property and everything that is filtered out,
+ * unknown or an array is skipped with {@link JsonParser#skipChildren()}. Json nulls are skipped. A
+ * {@link PatchFilter} is followed down the nested objects, so a sub tree it denies is skipped unread.
+ * Since parsing and patching are interleaved the traced patch time includes the parsing.
+ */
+public class StreamingPatcherJson extends JsonObjectPatcher {
+	public static <T> Optional<T> PATCH(String json, T patchable) throws PatcherException {
+		return PATCH(json, patchable, s -> true);
+	}
+
+	public static <T> Optional<T> PATCH(String json, T patchable, Predicate<String> filter) throws PatcherException {
+		try (JsonParser parser = createParser(json)) {
+			return PATCH(parser, patchable, filter);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+		}
+	}
+
+	public static <T> Optional<T> PATCH(byte[] json, int offset, int length, T patchable, Predicate<String> filter) throws PatcherException {
+		return PATCH(() -> createParser(json, offset, length), "json-bytes", patchable, PatchFilter.of(filter));
+	}
+
+	public static <T> Optional<T> PATCH(InputStream json, T patchable, Predicate<String> filter) throws PatcherException {
+		return PATCH(() -> createParser(json), "json-stream", patchable, PatchFilter.of(filter));
+	}
+
+	public static <T> Optional<T> PATCH(ByteBuffer json, T patchable, Predicate<String> filter) throws PatcherException {
+		return PATCH(() -> createParser(json), "json-buffer", patchable, PatchFilter.of(filter));
+	}
+
+	public static <T> Optional<T> PATCH(Path json, T patchable, Predicate<String> filter) throws PatcherException {
+		return PATCH(() -> createParser(json), "json-file: " + json, patchable, PatchFilter.of(filter));
+	}
+
+	public static <T> Optional<T> PATCH(String json, T patchable, PatchFilter filter) throws PatcherException {
+		try (JsonParser parser = createParser(json)) {
+			return PATCH(parser, patchable, filter);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall json-string: " + json, e);
+		}
+	}
+
+	/**
+	 * Patch from a parser over the whole source, the parser is closed when done but a stream of the caller is not.
+	 */
+	private static <T> Optional<T> PATCH(ParserSource source, String description, T patchable, PatchFilter filter) throws PatcherException {
+		try (JsonParser parser = source.open()) {
+			return PATCH(parser, patchable, filter);
+		} catch (IOException e) {
+			throw new PatcherException("Unable to json unmarshall " + description, e);
+		}
+	}
+
+	/**
+	 * Patch from the parser, the parser is left after the end of the first value it reads.
+	 */
+	public static <T> Optional<T> PATCH(JsonParser parser, T patchable, Predicate<String> filter) throws IOException {
+		return PATCH(parser, patchable, PatchFilter.of(filter));
+	}
+
+	/**
+	 * Patch from the parser, the parser is left after the end of the first value it reads.
+	 */
+	public static <T> Optional<T> PATCH(JsonParser parser, T patchable, PatchFilter filter) throws IOException {
+		JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+		if (token == JsonToken.START_OBJECT && patchable != null && !ObjectPatcher.isContainer(patchable)) {
+			long start = PatchTracer.ENABLED ? System.nanoTime() : 0L;
+			int written = PATCH_OBJECT(parser, patchable, filter);
+			if (PatchTracer.ENABLED) {
+				PatchTracer.METRICS.patched(patchable.getClass(), written, System.nanoTime() - start);
+			}
+		} else if (token != null) {
+			parser.skipChildren();
+		}
+		return Optional.ofNullable(patchable);
+	}
+
+	/**
+	 * @return the number of scalar properties written, including those of sub objects
+	 */
+	private static int PATCH_OBJECT(JsonParser parser, Object patchable, PatchFilter filter) throws IOException {
+		ClassMetadata metadata = ClassMetadata.of(patchable.getClass());
+		int written = 0;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			PatchFilter field = filter.field(name);
+			boolean accepted = token == JsonToken.START_OBJECT ? !field.isPruned() : field.isAllowed();
+			Optional<PropertyMetadata> property = accepted ? metadata.getProperty(name) : Optional.empty();
+			if (PatchTracer.ENABLED && !accepted) {
+				PatchTracer.METRICS.skipped(patchable.getClass(), name);
+			} else if (PatchTracer.ENABLED && metadata.isBlackListed(name)) {
+				PatchTracer.METRICS.blackListed(patchable.getClass(), name);
+			}
+			if (!property.isPresent()) {
+				parser.skipChildren();
+			} else if (token == JsonToken.START_OBJECT) {
+				Optional<Object> value = property.get().get(patchable);
+				if (value.isPresent() && !ObjectPatcher.isContainer(value.get())) {
+					written += PATCH_OBJECT(parser, value.get(), field);
+				} else {
+					parser.skipChildren();
+				}
+			} else if (token == JsonToken.START_ARRAY) {
+				parser.skipChildren();
+			} else {
+				property.get().getWriter().write(patchable, parser);
+				written++;
+			}
+		}
+		return written;
+	}
+}
@@ -0,0 +1,31 @@
+package org.joakimhenriksson.patcher;
+
+import javax.validation.constraints.NotNull;
+import java.util.function.Supplier;
+
+/**
+ * Creates the sub object of a property that is null when a patch has an object for it, instead of dropping that
+ * part of the patch.
+ *
+ * The created object is patched and then set on the property. {@link #NONE} keeps null sub objects null, as the
+ * patchers always did, {@link #CONSTRUCTOR} calls the no argument constructor through a {@link
+ * java.lang.invoke.MethodHandle} linked once per class. Instances can be recycled from a pool with
+ * {@link #with(Class, Supplier)}, e.g. {@code CONSTRUCTOR.with(Sub.class, pool::borrow)}.
+ */
+@FunctionalInterface
+public interface SubObjectFactory {
+	SubObjectFactory NONE = type -> null;
+	SubObjectFactory CONSTRUCTOR = ConstructorFactory::create;
+
+	/**
+	 * A new instance of the type, or null if it can not be created.
+	 */
+	Object create(@NotNull Class<?> type);
+
+	/**
+	 * A factory that takes instances of the type from the supplier and creates any other type with this factory.
+	 */
+	@NotNull default <T> SubObjectFactory with(@NotNull Class<T> type, @NotNull Supplier<? extends T> supplier) {
+		return cls -> cls == type ? supplier.get() : create(cls);
+	}
+}
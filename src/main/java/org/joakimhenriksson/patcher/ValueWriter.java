@@ -0,0 +1,303 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import com.google.common.primitives.Primitives;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Writes a json scalar to a property, picked once per property by its declared type.
+ *
+ * Primitive properties are written through the primitive setters of the {@link PropertyAccessor}, straight
+ * from the value node or the current parser token, so the value is neither boxed nor wrapped on the way.
+ * Numbers are coerced to the declared type, failing with a {@link PatcherException} when they are out of its
+ * range. Json nulls are ignored and values of any other type are handed to the accessor untyped, as before.
+ */
+abstract class ValueWriter {
+	protected final PropertyMetadata property;
+	protected final PropertyAccessor accessor;
+
+	private ValueWriter(PropertyMetadata property, PropertyAccessor accessor) {
+		this.property = property;
+		this.accessor = accessor;
+	}
+
+	@NotNull static ValueWriter of(@NotNull PropertyMetadata property, @NotNull PropertyAccessor accessor) {
+		Class<?> type = Primitives.unwrap(property.getType());
+		if (type == boolean.class) {
+			return new BooleanWriter(property, accessor);
+		}
+		if (type == byte.class || type == short.class || type == int.class) {
+			return new IntWriter(property, accessor, type);
+		}
+		if (type == long.class) {
+			return new LongWriter(property, accessor);
+		}
+		if (type == float.class) {
+			return new FloatWriter(property, accessor);
+		}
+		if (type == double.class) {
+			return new DoubleWriter(property, accessor);
+		}
+		if (type == String.class) {
+			return new TextWriter(property, accessor);
+		}
+		if (type == BigInteger.class) {
+			return new BigIntegerWriter(property, accessor);
+		}
+		if (type == BigDecimal.class) {
+			return new BigDecimalWriter(property, accessor);
+		}
+		return new ValueWriter(property, accessor) {
+		};
+	}
+
+	/**
+	 * Write the value of the node, a json null is ignored.
+	 */
+	void write(@NotNull Object target, @NotNull ValueNode value) throws PatcherException {
+		if (!value.isNull()) {
+			accessor.set(target, JsonObjectPatcher.getFieldValue(value));
+		}
+	}
+
+	/**
+	 * Write the value of the current scalar token of the parser, a json null is ignored.
+	 */
+	void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+		JsonObjectPatcher.getOptionalFieldValue(parser).ifPresent(value -> accessor.set(target, value));
+	}
+
+	protected PatcherException outOfRange(Object value) {
+		return new PatcherException("Value " + value + " is out of range for property " + property.getName());
+	}
+
+	private static final class BooleanWriter extends ValueWriter {
+		private BooleanWriter(PropertyMetadata property, PropertyAccessor accessor) {
+			super(property, accessor);
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (value.isBoolean()) {
+				accessor.setBoolean(target, value.booleanValue());
+			} else {
+				super.write(target, value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			JsonToken token = parser.currentToken();
+			if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+				accessor.setBoolean(target, token == JsonToken.VALUE_TRUE);
+			} else {
+				super.write(target, parser);
+			}
+		}
+	}
+
+	/**
+	 * Writes {@code byte}, {@code short} and {@code int} properties.
+	 */
+	private static final class IntWriter extends ValueWriter {
+		private final Class<?> type;
+		private final int min;
+		private final int max;
+
+		private IntWriter(PropertyMetadata property, PropertyAccessor accessor, Class<?> type) {
+			super(property, accessor);
+			this.type = type;
+			this.min = type == byte.class ? Byte.MIN_VALUE : type == short.class ? Short.MIN_VALUE : Integer.MIN_VALUE;
+			this.max = type == byte.class ? Byte.MAX_VALUE : type == short.class ? Short.MAX_VALUE : Integer.MAX_VALUE;
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (!value.isIntegralNumber()) {
+				super.write(target, value);
+			} else if (value.canConvertToInt()) {
+				write(target, value.intValue(), value);
+			} else {
+				throw outOfRange(value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+				super.write(target, parser);
+			} else if (parser.getNumberType() == JsonParser.NumberType.INT) {
+				write(target, parser.getIntValue(), parser);
+			} else {
+				throw outOfRange(parser.getText());
+			}
+		}
+
+		private void write(Object target, int value, Object source) {
+			if (value < min || value > max) {
+				throw outOfRange(source);
+			}
+			if (type == byte.class) {
+				accessor.setByte(target, (byte) value);
+			} else if (type == short.class) {
+				accessor.setShort(target, (short) value);
+			} else {
+				accessor.setInt(target, value);
+			}
+		}
+	}
+
+	private static final class LongWriter extends ValueWriter {
+		private LongWriter(PropertyMetadata property, PropertyAccessor accessor) {
+			super(property, accessor);
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (!value.isIntegralNumber()) {
+				super.write(target, value);
+			} else if (value.canConvertToLong()) {
+				accessor.setLong(target, value.longValue());
+			} else {
+				throw outOfRange(value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+				super.write(target, parser);
+			} else if (parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+				accessor.setLong(target, parser.getLongValue());
+			} else {
+				throw outOfRange(parser.getText());
+			}
+		}
+	}
+
+	private static final class FloatWriter extends ValueWriter {
+		private FloatWriter(PropertyMetadata property, PropertyAccessor accessor) {
+			super(property, accessor);
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (value.isNumber()) {
+				accessor.setFloat(target, value.floatValue());
+			} else {
+				super.write(target, value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			if (parser.currentToken().isNumeric()) {
+				accessor.setFloat(target, parser.getFloatValue());
+			} else {
+				super.write(target, parser);
+			}
+		}
+	}
+
+	private static final class DoubleWriter extends ValueWriter {
+		private DoubleWriter(PropertyMetadata property, PropertyAccessor accessor) {
+			super(property, accessor);
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (value.isNumber()) {
+				accessor.setDouble(target, value.doubleValue());
+			} else {
+				super.write(target, value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			if (parser.currentToken().isNumeric()) {
+				accessor.setDouble(target, parser.getDoubleValue());
+			} else {
+				super.write(target, parser);
+			}
+		}
+	}
+
+	private static final class TextWriter extends ValueWriter {
+		private TextWriter(PropertyMetadata property, PropertyAccessor accessor) {
+			super(property, accessor);
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (value.isTextual()) {
+				accessor.set(target, value.textValue());
+			} else {
+				super.write(target, value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			if (parser.currentToken() == JsonToken.VALUE_STRING) {
+				accessor.set(target, parser.getText());
+			} else {
+				super.write(target, parser);
+			}
+		}
+	}
+
+	private static final class BigIntegerWriter extends ValueWriter {
+		private BigIntegerWriter(PropertyMetadata property, PropertyAccessor accessor) {
+			super(property, accessor);
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (value.isIntegralNumber()) {
+				accessor.set(target, value.bigIntegerValue());
+			} else {
+				super.write(target, value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+				accessor.set(target, parser.getBigIntegerValue());
+			} else {
+				super.write(target, parser);
+			}
+		}
+	}
+
+	private static final class BigDecimalWriter extends ValueWriter {
+		private BigDecimalWriter(PropertyMetadata property, PropertyAccessor accessor) {
+			super(property, accessor);
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull ValueNode value) {
+			if (value.isNumber()) {
+				accessor.set(target, value.decimalValue());
+			} else {
+				super.write(target, value);
+			}
+		}
+
+		@Override
+		void write(@NotNull Object target, @NotNull JsonParser parser) throws IOException {
+			if (parser.currentToken().isNumeric()) {
+				accessor.set(target, parser.getDecimalValue());
+			} else {
+				super.write(target, parser);
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+@Test
+public class TestConcurrentPatcherJson {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void testCopyOnWrite() throws IOException {
+		PatchableSubObject original = new PatchableSubObject();
+		AtomicReference<PatchableSubObject> reference = new AtomicReference<>(original);
+		PatchableSubObject published = ConcurrentPatcherJson.PATCH(MAPPER.readTree("{\"strong\":\"Quack!\"}"), reference, sub -> sub.getStrung() != null, ConcurrentPatcherJson::COPY);
+		Assert.assertSame(reference.get(), published);
+		Assert.assertEquals(published.getStrung(), "Quack!");
+		Assert.assertEquals(original.getStrung(), "strung");
+	}
+
+	@Test
+	public void testCopyOnWriteValidation() throws IOException {
+		PatchableSubObject original = new PatchableSubObject();
+		AtomicReference<PatchableSubObject> reference = new AtomicReference<>(original);
+		try {
+			ConcurrentPatcherJson.PATCH(MAPPER.readTree("{\"strong\":\"Honk!\"}"), reference, sub -> !sub.getStrung().equals("Honk!"), ConcurrentPatcherJson::COPY);
+			Assert.fail();
+		} catch (PatcherException expected) {
+			Assert.assertSame(reference.get(), original);
+		}
+	}
+
+	@Test
+	public void testConcurrentCopyOnWrite() {
+		AtomicReference<PatchableSubObject> reference = new AtomicReference<>(new PatchableSubObject());
+		IntStream.range(0, 1000).parallel().forEach(i -> {
+			JsonNode patch = MAPPER.createObjectNode().put("strong", "Quack " + i);
+			ConcurrentPatcherJson.PATCH(patch, reference, sub -> sub.getStrung().startsWith("Quack"), ConcurrentPatcherJson::COPY);
+		});
+		Assert.assertTrue(reference.get().getStrung().startsWith("Quack "));
+	}
+
+	@Test
+	public void testLocked() throws IOException {
+		PatchableSubObject sub = new PatchableSubObject();
+		ConcurrentPatcherJson.PATCH_LOCKED(MAPPER.readTree("{\"strong\":\"Quack!\"}"), sub);
+		Assert.assertEquals(ConcurrentPatcherJson.READ(sub, PatchableSubObject::getStrung), "Quack!");
+		try {
+			ConcurrentPatcherJson.PATCH_LOCKED(MAPPER.readTree("{\"strong\":\"Honk!\"}"), sub, x -> true, s -> !s.getStrung().equals("Honk!"), ConcurrentPatcherJson::COPY);
+			Assert.fail();
+		} catch (PatcherException expected) {
+			Assert.assertEquals(sub.getStrung(), "Quack!");
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+@Test
+public class TestJsonDiff {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void testDiff() throws IOException {
+		JsonPatcherObject previous = new JsonPatcherObject();
+		JsonPatcherObject current = new JsonPatcherObject();
+		current.intgr = 1;
+		current.string = null;
+		current.blackListedInteger = 3;
+		current.sub.strung = "Quack!";
+		current.subNull = new PatchableSubObject();
+		current.list.add("duck");
+
+		JsonNode diff = JsonDiff.DIFF(previous, current);
+		Assert.assertEquals(diff, MAPPER.readTree("{\"duck\":null,\"int\":1,\"List\":[\"duck\"],\"sub\":{\"strong\":\"Quack!\"},\"subNull\":{\"strong\":\"strung\"}}"));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonDiff.DIFF(previous, current, out);
+		Assert.assertEquals(MAPPER.readTree(out.toByteArray()), diff);
+	}
+
+	@Test
+	public void testUnchanged() {
+		Assert.assertEquals(JsonDiff.DIFF(new JsonPatcherObject(), new JsonPatcherObject()).size(), 0);
+	}
+
+	@Test
+	public void testPatchWithDiff() {
+		JsonPatcherObject previous = new JsonPatcherObject();
+		JsonPatcherObject current = new JsonPatcherObject();
+		current.intgr = 1;
+		current.integer = 7;
+		current.sub.strung = "Quack!";
+
+		RecursivePatcherJson.PATCH(JsonDiff.DIFF(previous, current), previous, x -> true);
+		Assert.assertEquals(previous.toString(), current.toString());
+	}
+
+	@Test
+	public void testMergeWithDiff() {
+		JsonPatcherObject previous = new JsonPatcherObject();
+		previous.map.put("removed", "goose");
+		previous.map.put("changed", "duck");
+		JsonPatcherObject current = new JsonPatcherObject();
+		current.string = null;
+		current.integer = null;
+		current.sub = null;
+		current.subNull = new PatchableSubObject();
+		current.subNull.strung = null;
+		current.map.put("changed", "swan");
+		current.map.put("added", "duck");
+
+		JsonNode diff = JsonDiff.DIFF(previous, current);
+		MergePatcherJson.PATCH(diff, previous);
+		Assert.assertEquals(previous.toString(), current.toString());
+		Assert.assertTrue(diff.get("map").equals(MAPPER.createObjectNode().put("changed", "swan").put("added", "duck").putNull("removed")), diff.toString());
+	}
+}
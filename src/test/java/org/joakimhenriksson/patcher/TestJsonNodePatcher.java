@@ -0,0 +1,101 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class TestJsonNodePatcher {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String PATCH = "{\"int\":1,\"duck\":\"quack\",\"sub\":{\"strong\":\"Quack!\"}}";
+
+	@Test
+	public void testPatch() throws IOException {
+		for (AccessorBackend backend : AccessorBackend.values()) {
+			JsonNodePatcher patcher = JsonNodePatcher.builder()
+				                          .accessorBackend(backend)
+				                          .generatedPatchers(false)
+				                          .build()
+				                          .warm(JsonPatcherObject.class);
+			JsonPatcherObject patchableObject = patcher.patch(MAPPER.readTree(PATCH), new JsonPatcherObject());
+			Assert.assertEquals(patchableObject.intgr, 1);
+			Assert.assertEquals(patchableObject.string, "quack");
+			Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+		}
+	}
+
+	@Test
+	public void testFilterAndMetrics() throws IOException {
+		AtomicInteger properties = new AtomicInteger();
+		JsonNodePatcher patcher = JsonNodePatcher.builder()
+			                          .objectMapper(MAPPER)
+			                          .generatedPatchers(false)
+			                          .metrics((type, count, nanos) -> properties.addAndGet(count))
+			                          .build();
+		JsonPatcherObject patchableObject = patcher.patch(MAPPER.readTree(PATCH), new JsonPatcherObject(), node -> !node.isNumber());
+		Assert.assertEquals(patchableObject.intgr, 21);
+		Assert.assertEquals(patchableObject.string, "quack");
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+		Assert.assertEquals(properties.get(), 2);
+	}
+
+	@Test
+	public void testSubObjectFactory() throws IOException {
+		JsonNode patch = MAPPER.readTree("{\"subNull\":{\"strong\":\"Quack!\"}}");
+		Assert.assertNull(JsonNodePatcher.builder().build().patch(patch, new JsonPatcherObject()).subNull);
+
+		JsonPatcherObject created = JsonNodePatcher.builder().subObjectFactory(SubObjectFactory.CONSTRUCTOR).build().patch(patch, new JsonPatcherObject());
+		Assert.assertEquals(created.subNull.getStrung(), "Quack!");
+
+		PatchableSubObject pooled = new PatchableSubObject();
+		SubObjectFactory factory = SubObjectFactory.NONE.with(PatchableSubObject.class, () -> pooled);
+		JsonPatcherObject recursive = RecursivePatcherJson.PATCH(patch, new JsonPatcherObject(), x -> true, factory).get();
+		Assert.assertSame(recursive.subNull, pooled);
+		Assert.assertEquals(pooled.getStrung(), "Quack!");
+	}
+
+	@Test
+	public void testInheritedMetadataCached() {
+		List<Class<?>> resolved = new ArrayList<>();
+		JsonNodePatcher.builder()
+			.metrics(new PatchMetrics() {
+				@Override
+				public void patched(Class<?> type, int properties, long nanos) {
+				}
+
+				@Override
+				public void metadataResolved(Class<?> type, long nanos) {
+					resolved.add(type);
+				}
+			})
+			.build()
+			.warm(JsonPatcherObject.class, JsonPatcher.class);
+		Assert.assertEquals(resolved, Arrays.asList(JsonPatcher.class, JsonPatcherObject.class));
+	}
+
+	@Test(expectedExceptions = PatchLimitException.class)
+	public void testDeepPayload() {
+		JsonNodePatcher.builder().build().patch(Strings.repeat("[", 100_000), new JsonPatcherObject());
+	}
+
+	@Test(expectedExceptions = PatchLimitException.class)
+	public void testStreamPayloadSize() {
+		byte[] json = ("{\"duck\":\"" + Strings.repeat("quack", 20) + "\"}").getBytes(StandardCharsets.UTF_8);
+		JsonNodePatcher.builder().limits(PatchLimits.builder().maxPayloadSize(50).build()).build().patch(new ByteArrayInputStream(json), new JsonPatcherObject());
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testMaxDepth() {
+		JsonNodePatcher.builder().limits(PatchLimits.builder().maxDepth(1).build()).generatedPatchers(false).build().patch(PATCH, new JsonPatcherObject());
+	}
+}
@@ -0,0 +1,27 @@
+package org.joakimhenriksson.patcher;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@Test
+public class TestMergePatcherJson {
+	@Test
+	public void testMergePatch() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		patchableObject.map.put("removed", "value");
+		patchableObject.list.add("a");
+		List<String> list = patchableObject.list;
+		MergePatcherJson.PATCH("{\"duck\":null,\"int\":null,\"integer\":7,\"map\":{\"removed\":null,\"added\":\"value\"},\"List\":[\"b\",\"c\"],\"sub\":{\"strong\":\"Quack!\"}}", patchableObject);
+		Assert.assertNull(patchableObject.string);
+		Assert.assertEquals(patchableObject.intgr, 21);
+		Assert.assertEquals(patchableObject.integer, Integer.valueOf(7));
+		Assert.assertEquals(patchableObject.map, Collections.singletonMap("added", "value"));
+		Assert.assertSame(patchableObject.list, list);
+		Assert.assertEquals(patchableObject.list, Arrays.asList("b", "c"));
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+	}
+}
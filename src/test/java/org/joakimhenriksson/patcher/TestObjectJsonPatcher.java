@@ -2,14 +2,23 @@ package org.joakimhenriksson.patcher;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.jcabi.aspects.Loggable;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Predicate;
 
@@ -108,6 +117,451 @@ public class TestObjectJsonPatcher {
 		Assert.assertTrue(po.set.contains("Duck"));
 	}
 
+	@Test
+	public void testFieldValueWithPredicate() {
+		JsonPatcherObject po = new JsonPatcherObject();
+		Predicate<AccessibleObject> jsonProperty = ObjectPatcher.withAnnotation(JsonProperty.class);
+		ObjectPatcher.setFieldValue("int", po, 7, jsonProperty);
+		ObjectPatcher.setFieldValue("set", po, Sets.newHashSet("Duck"), jsonProperty);
+		ObjectPatcher.setFieldValue("blackListedInteger", po, 3, jsonProperty);
+		Assert.assertEquals(po.intgr, 7);
+		Assert.assertTrue(po.set.contains("Duck"));
+		Assert.assertNull(po.blackListedInteger);
+		Assert.assertEquals(ObjectPatcher.getFieldValue("duck", po, jsonProperty), Optional.of("Duck"));
+		Assert.assertEquals(ObjectPatcher.getFieldValue("set", po, jsonProperty), Optional.of(po.set));
+		Assert.assertFalse(ObjectPatcher.getFieldValue("quack", po, jsonProperty).isPresent());
+	}
+
+	@Test
+	public void testClassMetadata() {
+		ClassMetadata metadata = ClassMetadata.of(JsonPatcherObject.class);
+		Assert.assertSame(ClassMetadata.of(JsonPatcherObject.class), metadata);
+		Assert.assertTrue(metadata.getProperty("int").flatMap(PropertyMetadata::getField).isPresent());
+		Assert.assertTrue(metadata.getProperty("set").flatMap(PropertyMetadata::getSetter).isPresent());
+		Assert.assertFalse(metadata.getProperty("set").flatMap(PropertyMetadata::getGetter).isPresent());
+		Assert.assertFalse(metadata.getProperty("quack").isPresent());
+	}
+
+	@Test
+	public void testAccessorBackends() {
+		PropertyMetadata intProperty = ClassMetadata.of(JsonPatcherObject.class).getProperty("int").get();
+		PropertyMetadata strongProperty = ClassMetadata.of(PatchableSubObject.class).getProperty("strong").get();
+		for (AccessorBackend backend : AccessorBackend.values()) {
+			JsonPatcherObject po = new JsonPatcherObject();
+			intProperty.getAccessor(backend).setInt(po, 7);
+			Assert.assertEquals(po.intgr, 7);
+			intProperty.getAccessor(backend).set(po, 8);
+			Assert.assertEquals(intProperty.getAccessor(backend).get(po), 8);
+			strongProperty.getAccessor(backend).set(po.sub, "Quack!");
+			Assert.assertEquals(strongProperty.getAccessor(backend).get(po.sub), "Quack!");
+		}
+	}
+
+	@Test
+	public void testPatchBinarySources() throws IOException {
+		byte[] json = "  {\"sub\":{\"strong\":\"Quack!\"},\"int\":3}".getBytes(StandardCharsets.UTF_8);
+
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		patchableObject.patch(json, 2, json.length - 2);
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+		Assert.assertEquals(patchableObject.intgr, 3);
+
+		patchableObject = new JsonPatcherObject();
+		patchableObject.patch(new ByteArrayInputStream(json));
+		Assert.assertEquals(patchableObject.intgr, 3);
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(json.length);
+		direct.put(json).flip();
+		patchableObject = new JsonPatcherObject();
+		patchableObject.patch(direct);
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+
+		Path file = Files.createTempFile("patch", ".json");
+		try {
+			Files.write(file, json);
+			patchableObject = new JsonPatcherObject();
+			patchableObject.patch(file);
+			Assert.assertEquals(patchableObject.intgr, 3);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testCallerStreamLeftOpen() {
+		byte[] json = "{\"int\":3}{\"int\":4}".getBytes(StandardCharsets.UTF_8);
+		boolean[] closed = new boolean[1];
+		ByteArrayInputStream stream = new ByteArrayInputStream(json) {
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		RecursivePatcherJson.PATCH(stream, new JsonPatcherObject(), x -> true);
+		SimplePatcherJson.PATCH(stream, new JsonPatcherObject(), x -> true);
+		StreamingPatcherJson.PATCH(stream, new JsonPatcherObject(), x -> true);
+		JsonNodePatcher.builder().build().patch(stream, new JsonPatcherObject());
+		Assert.assertFalse(closed[0]);
+	}
+
+	@Test
+	public void testPatchAll() {
+		List<JsonPatcherObject> patchableObjects = Arrays.asList(new JsonPatcherObject(), new JsonPatcherObject());
+		JsonPatcher.patchAll("{\"int\":1,\"sub\":{\"strong\":\"Quack!\"}}", patchableObjects);
+		for (JsonPatcherObject patchableObject : patchableObjects) {
+			Assert.assertEquals(patchableObject.intgr, 1);
+			Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+		}
+	}
+
+	@Test
+	public void testPatchCoalesced() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		patchableObject.patch(Arrays.asList(
+			"{\"int\":1,\"duck\":\"quack\",\"sub\":{\"strong\":\"Quack!\"}}",
+			"{\"int\":2,\"sub\":{\"strong\":\"Honk!\"}}",
+			"{\"int\":3}"));
+		Assert.assertEquals(patchableObject.intgr, 3);
+		Assert.assertEquals(patchableObject.string, "quack");
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Honk!");
+	}
+
+	@Test
+	public void testPatchCoalescedNull() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		patchableObject.patch(Arrays.asList(
+			"{\"int\":5,\"sub\":{\"strong\":\"Quack!\"}}",
+			"{\"int\":null,\"sub\":null}"));
+		Assert.assertEquals(patchableObject.intgr, 5);
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+
+		Containers containers = new Containers();
+		containers.map.put("removed", 1);
+		RecursivePatcherJson.PATCH_COALESCED(Arrays.asList(
+			"{\"map\":{\"added\":2}}",
+			"{\"map\":{\"removed\":null,\"added\":null}}"), containers, x -> true);
+		Assert.assertTrue(containers.map.isEmpty());
+	}
+
+	@Test
+	public void testPatchTracer() {
+		PatchTracer tracer = new PatchTracer();
+		tracer.asMetrics().parsed(5);
+		tracer.asMetrics().patched(JsonPatcherObject.class, 1, 10);
+		tracer.asMetrics().patched(JsonPatcherObject.class, 2, 20);
+		Assert.assertEquals(tracer.getParseTiming().getCount(), 1);
+		Assert.assertEquals(tracer.getPatchTimings().get(JsonPatcherObject.class).getCount(), 2);
+		tracer.reset();
+		Assert.assertTrue(tracer.getPatchTimings().isEmpty());
+	}
+
+	@Test
+	public void testPatchTracerMetrics() throws IOException {
+		PatchTracer tracer = new PatchTracer();
+		JsonNodePatcher patcher = JsonNodePatcher.builder().generatedPatchers(false).metrics(tracer.asMetrics()).build();
+		JsonNode tree = new ObjectMapper().readTree("{\"int\":1,\"duck\":\"quack\",\"blackListedInteger\":3}");
+		patcher.patchFields(tree, new JsonPatcherObject(), field -> !field.getKey().equals("duck"));
+		Assert.assertEquals(tracer.getPatchCount(), 1);
+		Assert.assertEquals(tracer.getPropertiesWritten(), 1);
+		Assert.assertEquals(tracer.getPropertiesSkipped(), 1);
+		Assert.assertEquals(tracer.getBlackListedRejections(), 1);
+		Assert.assertEquals(tracer.getResolveCount(), 2, "JsonPatcherObject and its superclass JsonPatcher");
+		Assert.assertEquals(tracer.getMetadataRequests(), 1);
+		Assert.assertEquals(tracer.getPatchTiming().getPercentileNanos(0.99), tracer.getPatchMaxNanos());
+		Assert.assertEquals(Arrays.stream(tracer.getPatchTiming().getHistogram()).sum(), 1);
+	}
+
+	@Test
+	public void testPatchTracerMetricsGenerated() throws IOException {
+		PatchTracer tracer = new PatchTracer();
+		JsonNodePatcher patcher = JsonNodePatcher.builder().metrics(tracer.asMetrics()).build();
+		JsonNode tree = new ObjectMapper().readTree("{\"int\":1,\"duck\":\"quack\",\"blackListedInteger\":3,\"sub\":{\"strong\":\"Quack!\"}}");
+		JsonPatcherObject patchableObject = patcher.patchFields(tree, new JsonPatcherObject(), field -> !field.getKey().equals("duck"));
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+		Assert.assertEquals(tracer.getPatchCount(), 1);
+		Assert.assertEquals(tracer.getPropertiesWritten(), 2);
+		Assert.assertEquals(tracer.getPropertiesSkipped(), 1);
+		Assert.assertEquals(tracer.getBlackListedRejections(), 1);
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testMaxDepthGenerated() throws IOException {
+		JsonNodePatcher patcher = JsonNodePatcher.builder().limits(PatchLimits.builder().maxDepth(1).build()).build();
+		patcher.patch(new ObjectMapper().readTree("{\"sub\":{\"strong\":\"Quack!\"}}"), new JsonPatcherObject());
+	}
+
+	@Test
+	public void testGeneratedPatcher() throws IOException {
+		Optional<GeneratedPatcher<JsonPatcherObject>> generated = GeneratedPatchers.of(JsonPatcherObject.class);
+		Assert.assertTrue(generated.isPresent());
+		Assert.assertFalse(GeneratedPatchers.of(TestObjectJsonPatcher.class).isPresent());
+
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		JsonNode tree = new ObjectMapper().readTree("{\"int\":1,\"duck\":\"quack\",\"blackListedInteger\":3,\"sub\":{\"strong\":\"Quack!\"}}");
+		generated.get().patch(tree, patchableObject, JsonNode::isNumber);
+		Assert.assertEquals(patchableObject.intgr, 1);
+		Assert.assertEquals(patchableObject.string, "Duck");
+		Assert.assertNull(patchableObject.blackListedInteger);
+
+		generated.get().patch(tree, patchableObject);
+		Assert.assertEquals(patchableObject.string, "quack");
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+	}
+
+	@Test
+	public void testRuntimeGeneratedPatcher() throws IOException {
+		Optional<GeneratedPatcher<JsonPatcherObject>> generated = RuntimePatcherGenerator.generate(JsonPatcherObject.class);
+		Assert.assertTrue(generated.isPresent());
+		Assert.assertEquals(generated.get().getType(), JsonPatcherObject.class);
+
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		JsonNode tree = new ObjectMapper().readTree("{\"int\":1,\"duck\":\"quack\",\"blackListedInteger\":3,\"sub\":{\"strong\":\"Quack!\"}}");
+		generated.get().patch(tree, patchableObject);
+		Assert.assertEquals(patchableObject.intgr, 1);
+		Assert.assertEquals(patchableObject.string, "quack");
+		Assert.assertNull(patchableObject.blackListedInteger);
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+
+		List<String> blackListed = new ArrayList<>();
+		generated.get().patchTree(tree, patchableObject, x -> true, new GeneratedPatcher.Context() {
+			@Override
+			public int patchObject(JsonNode tree, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+				return RecursivePatcherJson.CONTEXT.patchObject(tree, patchable, predicate);
+			}
+
+			@Override
+			public int patchField(String name, JsonNode value, Object patchable, Predicate<Map.Entry<String, JsonNode>> predicate) {
+				return RecursivePatcherJson.CONTEXT.patchField(name, value, patchable, predicate);
+			}
+
+			@Override
+			public void blackListed(Class<?> type, String name) {
+				blackListed.add(name);
+			}
+		});
+		Assert.assertEquals(blackListed, Collections.singletonList("blackListedInteger"));
+	}
+
+	@Test
+	public void testPatchLimits() throws IOException {
+		PatchLimits limits = PatchLimits.builder().maxDepth(2).maxProperties(4).maxPayloadSize(100).build();
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		RecursivePatcherJson.PATCH("{\"int\":1,\"sub\":{\"strong\":\"Quack!\"}}", patchableObject, x -> true, limits);
+		Assert.assertEquals(patchableObject.intgr, 1);
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+
+		String deep = Strings.repeat("{\"sub\":", 4) + "{}" + Strings.repeat("}", 4);
+		String many = "{\"a\":1,\"b\":2,\"c\":3,\"d\":4,\"e\":5}";
+		String large = "{\"duck\":\"" + Strings.repeat("quack", 20) + "\"}";
+		for (Map.Entry<String, String> json : ImmutableMap.of(deep, "deeper", many, "properties", large, "larger").entrySet()) {
+			try {
+				RecursivePatcherJson.PATCH(json.getKey(), new JsonPatcherObject(), x -> true, limits);
+				Assert.fail();
+			} catch (PatchLimitException expected) {
+				Assert.assertTrue(expected.getMessage().contains(json.getValue()), expected.getMessage());
+				Assert.assertEquals(expected.getStackTrace().length, 0);
+			}
+		}
+
+		JsonPatcherObject untouched = new JsonPatcherObject();
+		try {
+			RecursivePatcherJson.PATCH(new ObjectMapper().readTree("{\"int\":1,\"duck\":\"quack\",\"a\":1,\"b\":2,\"c\":3}"), untouched, x -> true, limits);
+			Assert.fail();
+		} catch (PatchLimitException expected) {
+			Assert.assertEquals(untouched.intgr, 21);
+			Assert.assertEquals(untouched.string, "Duck");
+		}
+	}
+
+	@Test
+	public void testPatchLimitsCycle() throws IOException {
+		Cycle cycle = new Cycle();
+		cycle.next = cycle;
+		Cycle recursive = new Cycle();
+		recursive.next = recursive;
+		JsonNode tree = new ObjectMapper().readTree("{\"value\":1,\"next\":{\"other\":2,\"next\":{\"third\":3}}}");
+		RecursivePatcherJson.PATCH(tree, cycle, x -> true, PatchLimits.DEFAULT);
+		RecursivePatcherJson.PATCH(tree, recursive, x -> true);
+		Assert.assertEquals(cycle.value, 1);
+		Assert.assertEquals(cycle.other, 2);
+		Assert.assertEquals(cycle.third, 3);
+		Assert.assertEquals(recursive.value, 1);
+		Assert.assertEquals(recursive.other, 2);
+		Assert.assertEquals(recursive.third, 3);
+	}
+
+	@Test
+	public void testPatchLimitsSharedSubObject() throws IOException {
+		Shared shared = new Shared();
+		shared.b = shared.a;
+		JsonNode tree = new ObjectMapper().readTree("{\"a\":{\"value\":1},\"b\":{\"other\":2}}");
+		RecursivePatcherJson.PATCH(tree, shared, x -> true, PatchLimits.DEFAULT);
+		Assert.assertEquals(shared.a.value, 1);
+		Assert.assertEquals(shared.a.other, 2);
+	}
+
+	public static class Cycle {
+		@JsonProperty("value")
+		public int value;
+
+		@JsonProperty("other")
+		public int other;
+
+		@JsonProperty("third")
+		public int third;
+
+		@JsonProperty("next")
+		public Cycle next;
+	}
+
+	public static class Shared {
+		@JsonProperty("a")
+		public Cycle a = new Cycle();
+
+		@JsonProperty("b")
+		public Cycle b;
+	}
+
+	public static class Containers {
+		@JsonProperty("map")
+		public Map<String, Integer> map = new HashMap<>();
+
+		@JsonProperty("list")
+		public List<Long> list = new ArrayList<>();
+
+		@ArrayMerge
+		@JsonProperty("set")
+		public Set<String> set = new HashSet<>();
+	}
+
+	@Test
+	public void testPatchContainers() {
+		Containers containers = new Containers();
+		containers.map.put("removed", 1);
+		containers.map.put("kept", 2);
+		containers.list.add(1L);
+		containers.set.add("duck");
+		Map<String, Integer> map = containers.map;
+		List<Long> list = containers.list;
+
+		RecursivePatcherJson.PATCH("{\"map\":{\"removed\":null,\"added\":3},\"list\":[2,3],\"set\":[\"goose\"]}", containers);
+		Assert.assertSame(containers.map, map);
+		Assert.assertEquals(containers.map, ImmutableMap.of("kept", 2, "added", 3));
+		Assert.assertSame(containers.list, list);
+		Assert.assertEquals(containers.list, Arrays.asList(2L, 3L));
+		Assert.assertEquals(containers.set, Sets.newHashSet("duck", "goose"));
+	}
+
+	@Test
+	public void testPatchContainersCoalesced() {
+		Containers containers = new Containers();
+		containers.set.add("duck");
+		RecursivePatcherJson.PATCH_COALESCED(Arrays.asList(
+			"{\"list\":[1],\"set\":[\"goose\"]}",
+			"{\"list\":[2,3],\"set\":[\"swan\"]}"), containers, x -> true);
+		Assert.assertEquals(containers.list, Arrays.asList(2L, 3L));
+		Assert.assertEquals(containers.set, Sets.newHashSet("duck", "goose", "swan"));
+	}
+
+	@Test
+	public void testPatchAllClosesStream() {
+		boolean[] closed = new boolean[1];
+		List<JsonPatcherObject> patchableObjects = Arrays.asList(new JsonPatcherObject(), new JsonPatcherObject());
+		RecursivePatcherJson.PATCH_ALL("{\"int\":1}", patchableObjects.stream().onClose(() -> closed[0] = true), x -> true);
+		Assert.assertTrue(closed[0]);
+		Assert.assertEquals(patchableObjects.get(1).intgr, 1);
+	}
+
+	public interface Named {
+		@JsonProperty("name")
+		void setName(String name);
+	}
+
+	public static class Parent implements Named {
+		@JsonProperty("secret")
+		private String secret = "parent";
+		String name;
+		int count;
+
+		@Override
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		@JsonProperty("count")
+		public void setCount(int count) {
+			this.count = count;
+		}
+	}
+
+	public static class Child extends Parent {
+		@Override
+		@JsonProperty("count")
+		@BlackListed
+		public void setCount(int count) {
+			super.setCount(count);
+		}
+
+		String getSecret() {
+			return super.secret;
+		}
+	}
+
+	@Test
+	public void testInheritedProperties() {
+		Assert.assertTrue(ClassMetadata.of(Child.class).getProperty("secret").isPresent());
+		Assert.assertSame(ClassMetadata.of(Child.class).getProperty("name").get(), ClassMetadata.of(Parent.class).getProperty("name").get());
+
+		Child child = new Child();
+		RecursivePatcherJson.PATCH("{\"secret\":\"child\",\"name\":\"Donald\",\"count\":3}", child);
+		Assert.assertEquals(child.getSecret(), "child");
+		Assert.assertEquals(child.name, "Donald");
+		Assert.assertEquals(child.count, 0);
+	}
+
+	public static class Bean {
+		private boolean active;
+		private long amount;
+
+		@JsonProperty
+		public boolean isActive() {
+			return active;
+		}
+
+		@JsonProperty
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		@JsonProperty
+		public long getAmount() {
+			return amount;
+		}
+
+		@JsonProperty
+		public void setAmount(String amount) {
+			this.amount = Long.parseLong(amount);
+		}
+
+		@JsonProperty
+		public void setAmount(long amount) {
+			this.amount = amount;
+		}
+	}
+
+	@Test
+	public void testBeanConventions() throws NoSuchMethodException {
+		ClassMetadata metadata = ClassMetadata.of(Bean.class);
+		Assert.assertEquals(metadata.getProperty("active").flatMap(PropertyMetadata::getGetter), Optional.of(Bean.class.getMethod("isActive")));
+		Assert.assertEquals(metadata.getProperty("amount").flatMap(PropertyMetadata::getSetter), Optional.of(Bean.class.getMethod("setAmount", long.class)));
+		Assert.assertFalse(ClassMetadata.of(JsonPatcherObject.class).getProperty("blackListedInteger").isPresent());
+		Assert.assertEquals(ObjectPatcher.getMethod("get", "amount", Bean.class, x -> true), Optional.of(Bean.class.getMethod("getAmount")));
+
+		Bean bean = RecursivePatcherJson.PATCH("{\"active\":true,\"amount\":12}", new Bean()).get();
+		Assert.assertTrue(bean.isActive());
+		Assert.assertEquals(bean.getAmount(), 12L);
+	}
+
 	private String generateJson(Class<?> cls, String value) {
 		Optional<Field> field = Arrays.stream(JsonPatcherObject.class.getDeclaredFields()).filter(f -> cls.isAssignableFrom(f.getType())).findFirst();
 		return field.map((f) -> String.format("{\"%s\":\"%s\"}", getFieldName(f), value)).orElse("{}");
@@ -0,0 +1,113 @@
+package org.joakimhenriksson.patcher;
+
+import com.google.common.collect.ImmutableMap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@Test
+public class TestOperationPatcherJson {
+	@Test
+	public void testOperations() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		patchableObject.list.add("a");
+		patchableObject.map.put("kept", "value");
+		List<String> list = patchableObject.list;
+		OperationPatcherJson.PATCH("[" +
+			"{\"op\":\"test\",\"path\":\"/duck\",\"value\":\"Duck\"}," +
+			"{\"op\":\"replace\",\"path\":\"/duck\",\"value\":\"quack\"}," +
+			"{\"op\":\"add\",\"path\":\"/List/-\",\"value\":\"c\"}," +
+			"{\"op\":\"add\",\"path\":\"/List/1\",\"value\":\"b\"}," +
+			"{\"op\":\"add\",\"path\":\"/map/a~1b\",\"value\":\"slash\"}," +
+			"{\"op\":\"remove\",\"path\":\"/map/kept\"}," +
+			"{\"op\":\"add\",\"path\":\"/set/-\",\"value\":\"goose\"}," +
+			"{\"op\":\"replace\",\"path\":\"/sub/strong\",\"value\":\"Quack!\"}," +
+			"{\"op\":\"copy\",\"from\":\"/sub/strong\",\"path\":\"/map/copy\"}," +
+			"{\"op\":\"move\",\"from\":\"/List/0\",\"path\":\"/collection/-\"}," +
+			"{\"op\":\"replace\",\"path\":\"/int\",\"value\":3}" +
+			"]", patchableObject);
+		Assert.assertEquals(patchableObject.string, "quack");
+		Assert.assertSame(patchableObject.list, list);
+		Assert.assertEquals(patchableObject.list, Arrays.asList("b", "c"));
+		Assert.assertEquals(patchableObject.map.get("a/b"), "slash");
+		Assert.assertEquals(patchableObject.map.get("copy"), "Quack!");
+		Assert.assertFalse(patchableObject.map.containsKey("kept"));
+		Assert.assertEquals(patchableObject.set, Collections.singleton("goose"));
+		Assert.assertEquals(patchableObject.collection, Collections.singleton("a"));
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+		Assert.assertEquals(patchableObject.intgr, 3);
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testFailedTest() {
+		OperationPatcherJson.PATCH("[{\"op\":\"test\",\"path\":\"/duck\",\"value\":\"Goose\"}]", new JsonPatcherObject());
+	}
+
+	@Test
+	public void testAtomic() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		patchableObject.list.addAll(Arrays.asList("a", "b"));
+		patchableObject.map.put("kept", "value");
+		patchableObject.map.put("last", "value");
+		patchableObject.set.add("duck");
+		try {
+			OperationPatcherJson.PATCH("[" +
+				"{\"op\":\"replace\",\"path\":\"/duck\",\"value\":\"quack\"}," +
+				"{\"op\":\"add\",\"path\":\"/List/1\",\"value\":\"c\"}," +
+				"{\"op\":\"remove\",\"path\":\"/List/0\"}," +
+				"{\"op\":\"remove\",\"path\":\"/map/kept\"}," +
+				"{\"op\":\"add\",\"path\":\"/map/kept\",\"value\":\"other\"}," +
+				"{\"op\":\"replace\",\"path\":\"/set/0\",\"value\":\"goose\"}," +
+				"{\"op\":\"move\",\"from\":\"/List/0\",\"path\":\"/collection/-\"}," +
+				"{\"op\":\"replace\",\"path\":\"/int\",\"value\":3}," +
+				"{\"op\":\"test\",\"path\":\"/duck\",\"value\":\"Duck\"}" +
+				"]", patchableObject);
+			Assert.fail("The last operation should fail");
+		} catch (PatcherException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Test failed"), e.getMessage());
+		}
+		Assert.assertEquals(patchableObject.string, "Duck");
+		Assert.assertEquals(patchableObject.list, Arrays.asList("a", "b"));
+		Assert.assertEquals(patchableObject.map, ImmutableMap.of("kept", "value", "last", "value"));
+		Assert.assertEquals(patchableObject.set, Collections.singleton("duck"));
+		Assert.assertTrue(patchableObject.collection.isEmpty());
+		Assert.assertEquals(patchableObject.intgr, 21);
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testIndexOutOfBounds() {
+		OperationPatcherJson.PATCH("[{\"op\":\"add\",\"path\":\"/List/1\",\"value\":\"a\"}]", new JsonPatcherObject());
+	}
+
+	@Test
+	public void testNumericTest() {
+		TestValueWriter.Numbers numbers = new TestValueWriter.Numbers();
+		numbers.lng = 1;
+		numbers.flt = 1.5f;
+		numbers.bigDecimal = new BigDecimal("0.25");
+		OperationPatcherJson.PATCH("[" +
+			"{\"op\":\"test\",\"path\":\"/lng\",\"value\":1}," +
+			"{\"op\":\"test\",\"path\":\"/flt\",\"value\":1.5}," +
+			"{\"op\":\"test\",\"path\":\"/bigDecimal\",\"value\":0.250}" +
+			"]", numbers);
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testFailedNumericTest() {
+		TestValueWriter.Numbers numbers = new TestValueWriter.Numbers();
+		numbers.lng = 1;
+		OperationPatcherJson.PATCH("[{\"op\":\"test\",\"path\":\"/lng\",\"value\":1.5}]", numbers);
+	}
+
+	@Test
+	public void testJsonPath() {
+		Assert.assertSame(JsonPath.of("/a~0b/c~1d"), JsonPath.of("/a~0b/c~1d"));
+		Assert.assertEquals(JsonPath.of("/a~0b/c~1d").getTokens(), Arrays.asList("a~b", "c/d"));
+		Assert.assertTrue(JsonPath.of("").isRoot());
+		Assert.assertTrue(JsonPath.of("/a").isAncestorOf(JsonPath.of("/a/b")));
+	}
+}
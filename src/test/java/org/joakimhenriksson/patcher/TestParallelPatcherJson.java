@@ -0,0 +1,56 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+@Test
+public class TestParallelPatcherJson {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void testForkJoin() throws IOException {
+		List<JsonPatcherObject> patchableObjects = patchableObjects(1000);
+		BatchPatchResult<JsonPatcherObject> result = ParallelPatcherJson.PATCH_ALL(MAPPER.readTree("{\"int\":1,\"sub\":{\"strong\":\"Quack!\"}}"),
+			patchableObjects, x -> true, ForkJoinPool.commonPool(), 10);
+		Assert.assertTrue(result.isSuccessful());
+		Assert.assertEquals(result.getPatched(), 1000);
+		patchableObjects.forEach(patchableObject -> Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!"));
+	}
+
+	@Test
+	public void testExecutorCollectsFailures() throws IOException {
+		List<JsonPatcherObject> patchableObjects = patchableObjects(100);
+		JsonNode tree = MAPPER.readTree("{\"int\":\"not a number\"}");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			BatchPatchResult<JsonPatcherObject> result = ParallelPatcherJson.PATCH_ALL(tree, patchableObjects, x -> true, executor, 7);
+			Assert.assertEquals(result.getPatched(), 0);
+			Assert.assertEquals(result.getFailures().size(), 100);
+			try {
+				result.throwIfFailed();
+				Assert.fail();
+			} catch (PatcherException e) {
+				Assert.assertEquals(e.getSuppressed().length, 100);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private List<JsonPatcherObject> patchableObjects(int count) {
+		List<JsonPatcherObject> patchableObjects = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			patchableObjects.add(new JsonPatcherObject());
+		}
+		return patchableObjects;
+	}
+}
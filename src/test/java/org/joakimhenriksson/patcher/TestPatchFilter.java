@@ -0,0 +1,71 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+@Test
+public class TestPatchFilter {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String PATCH = "{\"int\":1,\"duck\":\"quack\",\"sub\":{\"strong\":\"Quack!\"}}";
+
+	@Test
+	public void testTrie() {
+		PatchFilter filter = PatchFilter.builder().allow("sub.strong").allow("int").deny("int.value").build();
+		Assert.assertTrue(filter.field("int").isAllowed());
+		Assert.assertFalse(filter.field("int").field("value").isAllowed());
+		Assert.assertTrue(filter.field("int").field("other").isAllowed());
+		Assert.assertFalse(filter.field("sub").isAllowed());
+		Assert.assertFalse(filter.field("sub").isPruned());
+		Assert.assertTrue(filter.field("sub").field("strong").isAllowed());
+		Assert.assertTrue(filter.field("sub").field("weak").isPruned());
+		Assert.assertTrue(filter.field("duck").isPruned());
+
+		PatchFilter denying = PatchFilter.builder().deny("sub").build();
+		Assert.assertTrue(denying.field("duck").isAllowed());
+		Assert.assertTrue(denying.field("sub").isPruned());
+	}
+
+	@Test
+	public void testNestedPath() throws IOException {
+		PatchFilter filter = PatchFilter.builder().allow("sub.strong").build();
+		JsonPatcherObject recursive = new JsonPatcherObject();
+		RecursivePatcherJson.PATCH(MAPPER.readTree(PATCH), recursive, filter);
+		Assert.assertEquals(recursive.intgr, 21);
+		Assert.assertEquals(recursive.string, "Duck");
+		Assert.assertEquals(recursive.sub.getStrung(), "Quack!");
+
+		JsonPatcherObject streamed = new JsonPatcherObject();
+		StreamingPatcherJson.PATCH(PATCH, streamed, filter);
+		Assert.assertEquals(streamed.intgr, 21);
+		Assert.assertEquals(streamed.string, "Duck");
+		Assert.assertEquals(streamed.sub.getStrung(), "Quack!");
+	}
+
+	@Test
+	public void testPrunedSubTree() {
+		PatchFilter filter = PatchFilter.builder().deny("sub").build();
+		JsonPatcherObject streamed = new JsonPatcherObject();
+		StreamingPatcherJson.PATCH(PATCH, streamed, filter);
+		Assert.assertEquals(streamed.intgr, 1);
+		Assert.assertEquals(streamed.string, "quack");
+		Assert.assertEquals(streamed.sub.getStrung(), "strung");
+	}
+
+	@Test
+	public void testWhiteAndBlackList() throws IOException {
+		JsonPatcherObject white = new JsonPatcherObject();
+		RecursivePatcherJson.PATCH(MAPPER.readTree(PATCH), white, ObjectPatcher.whiteList("int", "sub.strong"));
+		Assert.assertEquals(white.intgr, 1);
+		Assert.assertEquals(white.string, "Duck");
+		Assert.assertEquals(white.sub.getStrung(), "Quack!");
+
+		JsonPatcherObject black = new JsonPatcherObject();
+		RecursivePatcherJson.PATCH(MAPPER.readTree(PATCH), black, ObjectPatcher.blackList("sub.strong"));
+		Assert.assertEquals(black.intgr, 1);
+		Assert.assertEquals(black.string, "quack");
+		Assert.assertEquals(black.sub.getStrung(), "strung");
+	}
+}
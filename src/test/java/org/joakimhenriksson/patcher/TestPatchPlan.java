@@ -0,0 +1,51 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Sets;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Predicate;
+
+@Test
+public class TestPatchPlan {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void testPlanIsCachedByShape() throws IOException {
+		Predicate<Map.Entry<String, JsonNode>> filter = ObjectPatcher.blackList(Sets.newHashSet("integer"));
+		JsonNode first = MAPPER.readTree("{\"int\":1,\"integer\":2,\"sub\":{\"strong\":\"Quack!\"}}");
+		JsonNode second = MAPPER.readTree("{\"int\":3,\"integer\":4,\"sub\":{\"strong\":\"Honk!\"}}");
+		Assert.assertSame(PatchPlan.of(JsonPatcherObject.class, second, filter), PatchPlan.of(JsonPatcherObject.class, first, filter));
+
+		JsonNode reordered = MAPPER.readTree("{\"integer\":4,\"int\":3}");
+		Assert.assertNotSame(PatchPlan.of(JsonPatcherObject.class, reordered, filter), PatchPlan.of(JsonPatcherObject.class, first, filter));
+		Assert.assertNotSame(PatchPlan.of(JsonPatcherObject.class, first, x -> true), PatchPlan.of(JsonPatcherObject.class, first, filter));
+	}
+
+	@Test
+	public void testPatch() throws IOException {
+		Predicate<Map.Entry<String, JsonNode>> filter = ObjectPatcher.blackList(Sets.newHashSet("integer"));
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		PatchPlan.PATCH(MAPPER.readTree("{\"int\":1,\"integer\":2,\"duck\":\"quack\",\"sub\":{\"strong\":\"Quack!\"}}"), patchableObject, filter);
+		Assert.assertEquals(patchableObject.intgr, 1);
+		Assert.assertEquals(patchableObject.integer, Integer.valueOf(42));
+		Assert.assertEquals(patchableObject.string, "quack");
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testApplyOtherShape() throws IOException {
+		PatchPlan plan = PatchPlan.compile(JsonPatcherObject.class, MAPPER.readTree("{\"int\":1}"), x -> true);
+		plan.apply(MAPPER.readTree("{\"int\":1,\"integer\":2}"), new JsonPatcherObject());
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testApplyOtherFieldNames() throws IOException {
+		PatchPlan plan = PatchPlan.compile(JsonPatcherObject.class, MAPPER.readTree("{\"int\":1,\"integer\":2}"), x -> true);
+		plan.apply(MAPPER.readTree("{\"integer\":2,\"int\":1}"), new JsonPatcherObject());
+	}
+}
@@ -0,0 +1,125 @@
+package org.joakimhenriksson.patcher;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.io.ByteStreams;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+@Test
+public class TestPatchWarmer {
+	@Test
+	public void testScan() {
+		List<Class<?>> classes = PatchWarmer.WARM(getClass().getPackage().getName(), getClass().getClassLoader());
+		Assert.assertTrue(classes.contains(JsonPatcherObject.class));
+		Assert.assertTrue(classes.contains(PatchableSubObject.class));
+		Assert.assertFalse(classes.contains(TestPatchWarmer.class));
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+		Path snapshot = Files.createTempFile("patcher", ".snapshot");
+		try {
+			PatchWarmer.SNAPSHOT(Arrays.asList(JsonPatcherObject.class, PatchableSubObject.class), snapshot);
+			Assert.assertEquals(PatchWarmer.LOAD(snapshot, getClass().getClassLoader()), 0, "already resolved");
+		} finally {
+			Files.delete(snapshot);
+		}
+	}
+
+	@Test
+	public void testSeeded() throws Exception {
+		Path snapshot = Files.createTempFile("patcher", ".snapshot");
+		try {
+			PatchWarmer.SNAPSHOT(Collections.singletonList(Snapshotted.class), snapshot);
+			ClassLoader classLoader = new FreshClassLoader(Snapshotted.class.getName());
+			Class<?> fresh = classLoader.loadClass(Snapshotted.class.getName());
+			Assert.assertNotSame(fresh, Snapshotted.class);
+			Assert.assertEquals(PatchWarmer.LOAD(snapshot, classLoader), 1);
+			Assert.assertEquals(PatchWarmer.LOAD(snapshot, classLoader), 0, "already seeded");
+			Assert.assertEquals(ClassMetadata.of(fresh).getProperty("renamed").flatMap(PropertyMetadata::getField).map(Field::getDeclaringClass), Optional.of(fresh));
+
+			String patch = "{\"name\":\"duck\",\"renamed\":7,\"secret\":\"quack\"}";
+			Snapshotted reflected = RecursivePatcherJson.PATCH(patch, new Snapshotted()).get();
+			Object seeded = RecursivePatcherJson.PATCH(patch, fresh.getDeclaredConstructor().newInstance()).get();
+			for (String field : Arrays.asList("name", "value", "secret")) {
+				Assert.assertEquals(fresh.getField(field).get(seeded), Snapshotted.class.getField(field).get(reflected), field);
+			}
+			Assert.assertNull(reflected.secret);
+		} finally {
+			Files.delete(snapshot);
+		}
+	}
+
+	@Test
+	public void testStaleSnapshot() throws IOException {
+		Path snapshot = Files.createTempFile("patcher", ".snapshot");
+		try {
+			PatchWarmer.SNAPSHOT(Collections.singletonList(JsonPatcherObject.class), snapshot);
+			byte[] bytes = Files.readAllBytes(snapshot);
+			int fingerprint = 3 * Integer.BYTES + 2 + JsonPatcherObject.class.getName().length();
+			bytes[fingerprint] ^= 1;
+			Files.write(snapshot, bytes);
+			Assert.assertEquals(PatchWarmer.LOAD(snapshot, getClass().getClassLoader()), 0);
+		} finally {
+			Files.delete(snapshot);
+		}
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testNotASnapshot() throws IOException {
+		Path snapshot = Files.createTempFile("patcher", ".snapshot");
+		try {
+			Files.write(snapshot, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+			PatchWarmer.LOAD(snapshot, getClass().getClassLoader());
+		} finally {
+			Files.delete(snapshot);
+		}
+	}
+
+	public static class Snapshotted {
+		@JsonProperty public String name;
+		@JsonProperty("renamed") public int value;
+		@BlackListed @JsonProperty public String secret;
+	}
+
+	/**
+	 * Defines its own copy of the named class, which is not resolved yet.
+	 */
+	private static class FreshClassLoader extends ClassLoader {
+		private final String name;
+
+		FreshClassLoader(String name) {
+			super(TestPatchWarmer.class.getClassLoader());
+			this.name = name;
+		}
+
+		@Override
+		protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+			if (!className.equals(name)) {
+				return super.loadClass(className, resolve);
+			}
+			synchronized (getClassLoadingLock(className)) {
+				Class<?> loaded = findLoadedClass(className);
+				if (loaded != null) {
+					return loaded;
+				}
+				try (InputStream in = getParent().getResourceAsStream(className.replace('.', '/') + ".class")) {
+					byte[] bytes = ByteStreams.toByteArray(in);
+					return defineClass(className, bytes, 0, bytes.length);
+				} catch (IOException e) {
+					throw new ClassNotFoundException(className, e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package org.joakimhenriksson.patcher;
+
+import com.google.common.collect.Sets;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+
+@Test
+public class TestStreamingPatcherJson {
+	@Test
+	public void testPatchValues() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		StreamingPatcherJson.PATCH("{\"duck\":\"quack\",\"int\":0,\"integer\":24,\"unknown\":{\"a\":[1,2]}}", patchableObject);
+		Assert.assertEquals(patchableObject.string, "quack");
+		Assert.assertEquals(patchableObject.intgr, 0);
+		Assert.assertEquals(patchableObject.integer, Integer.valueOf(24));
+	}
+
+	@Test
+	public void testSubObject() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		StreamingPatcherJson.PATCH("{\"subNull\":{\"strong\":\"Honk!\"},\"sub\":{\"strong\":\"Quack!\"},\"duck\":\"quack\"}", patchableObject);
+		Assert.assertEquals(patchableObject.sub.getStrung(), "Quack!");
+		Assert.assertNull(patchableObject.subNull);
+		Assert.assertEquals(patchableObject.string, "quack");
+	}
+
+	@Test
+	public void testFilter() {
+		JsonPatcherObject patchableObject = new JsonPatcherObject();
+		Set<String> whiteList = Sets.newHashSet("integer");
+		StreamingPatcherJson.PATCH("{\"sub\":{\"strong\":\"Quack!\"},\"integer\":24,\"duck\":\"quack\"}", patchableObject, whiteList::contains);
+		Assert.assertEquals(patchableObject.integer, Integer.valueOf(24));
+		Assert.assertEquals(patchableObject.string, "Duck");
+		Assert.assertEquals(patchableObject.sub.getStrung(), "strung");
+	}
+}
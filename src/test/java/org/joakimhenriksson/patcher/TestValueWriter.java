@@ -0,0 +1,79 @@
+package org.joakimhenriksson.patcher;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Optional;
+
+@Test
+public class TestValueWriter {
+	private static final String PATCH = "{\"shrt\":7,\"lng\":3,\"boxedLong\":12345678901,\"flt\":2,\"dbl\":1.5,\"bigInteger\":123456789012345678901234567890,\"bigDecimal\":0.25,\"bool\":true}";
+
+	public static class Numbers {
+		public short shrt;
+		public long lng;
+		public Long boxedLong;
+		public float flt;
+		public double dbl;
+		public BigInteger bigInteger;
+		public BigDecimal bigDecimal;
+		public boolean bool;
+	}
+
+	@Test
+	public void testCoercion() {
+		assertCoerced(RecursivePatcherJson.PATCH(PATCH, new Numbers()).get());
+		assertCoerced(StreamingPatcherJson.PATCH(PATCH, new Numbers()).get());
+		assertCoerced(SimplePatcherJson.PATCH(PATCH, new Numbers()).get());
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testOutOfRange() {
+		RecursivePatcherJson.PATCH("{\"shrt\":40000}", new Numbers());
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testStreamingOutOfRange() {
+		StreamingPatcherJson.PATCH("{\"lng\":123456789012345678901234567890}", new Numbers());
+	}
+
+	@Test
+	public void testWidening() {
+		PropertyMetadata lng = ClassMetadata.of(Numbers.class).getProperty("lng").get();
+		PropertyMetadata dbl = ClassMetadata.of(Numbers.class).getProperty("dbl").get();
+		for (AccessorBackend backend : AccessorBackend.values()) {
+			Numbers numbers = new Numbers();
+			lng.getAccessor(backend).set(numbers, 5);
+			lng.getAccessor(backend).setInt(numbers, 6);
+			dbl.getAccessor(backend).set(numbers, 'a');
+			Assert.assertEquals(numbers.lng, 6L);
+			Assert.assertEquals(numbers.dbl, 97.0);
+		}
+	}
+
+	@Test(expectedExceptions = PatcherException.class)
+	public void testNarrowing() {
+		ClassMetadata.of(Numbers.class).getProperty("shrt").get().getAccessor(AccessorBackend.METHOD_HANDLE).set(new Numbers(), 5);
+	}
+
+	@Test
+	public void testLegacyFieldWrite() {
+		Numbers numbers = new Numbers();
+		ObjectPatcher.setFieldValue("lng", numbers, 9, x -> true);
+		Assert.assertEquals(numbers.lng, 9L);
+		Assert.assertEquals(ObjectPatcher.getFieldValue("lng", numbers, x -> true), Optional.of(9L));
+	}
+
+	private static void assertCoerced(Numbers numbers) {
+		Assert.assertEquals(numbers.shrt, 7);
+		Assert.assertEquals(numbers.lng, 3L);
+		Assert.assertEquals(numbers.boxedLong, Long.valueOf(12345678901L));
+		Assert.assertEquals(numbers.flt, 2f);
+		Assert.assertEquals(numbers.dbl, 1.5);
+		Assert.assertEquals(numbers.bigInteger, new BigInteger("123456789012345678901234567890"));
+		Assert.assertEquals(numbers.bigDecimal, new BigDecimal("0.25"));
+		Assert.assertTrue(numbers.bool);
+	}
+}